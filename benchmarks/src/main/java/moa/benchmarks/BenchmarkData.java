@@ -0,0 +1,127 @@
+/*
+ *    BenchmarkData.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import moa.streams.ArffFileStream;
+import moa.streams.InstanceStream;
+import moa.streams.generators.RandomRBFGenerator;
+
+/**
+ * Helpers shared by the benchmarks to materialise a fixed set of instances
+ * before measurement starts, so that stream generation or parsing is not
+ * part of the measured code unless a benchmark asks for it explicitly.
+ *
+ * @version $Revision: 1 $
+ */
+public final class BenchmarkData {
+
+    /** System property pointing to the directory with the datasets. */
+    public static final String DATASETS_DIR_PROPERTY = "moa.benchmarks.datasets";
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Creates a seeded RandomRBFGenerator producing dense instances.
+     *
+     * @param numAtts the number of (numeric) input attributes, M
+     * @param numClasses the number of classes
+     * @param seed the seed for both model and instance generation
+     * @return the prepared generator
+     */
+    public static RandomRBFGenerator newRandomRBF(int numAtts, int numClasses, int seed) {
+        RandomRBFGenerator generator = new RandomRBFGenerator();
+        generator.numAttsOption.setValue(numAtts);
+        generator.numClassesOption.setValue(numClasses);
+        generator.modelRandomSeedOption.setValue(seed);
+        generator.instanceRandomSeedOption.setValue(seed);
+        generator.prepareForUse();
+        return generator;
+    }
+
+    /**
+     * Reads up to count instances from a stream into an array.
+     */
+    public static Instance[] take(InstanceStream stream, int count) {
+        List<Instance> instances = new ArrayList<Instance>(count);
+        while (instances.size() < count && stream.hasMoreInstances()) {
+            instances.add(stream.nextInstance().getData());
+        }
+        return instances.toArray(new Instance[instances.size()]);
+    }
+
+    /**
+     * Turns dense instances into sparse ones keeping, on average, a fraction
+     * density of the input attributes. The class value is always kept.
+     */
+    public static Instance[] sparsify(Instance[] dense, InstancesHeader header,
+            double density, int seed) {
+        Random random = new Random(seed);
+        Instance[] sparse = new Instance[dense.length];
+        int numAttributes = header.numAttributes();
+        int classIndex = header.classIndex();
+        int[] indices = new int[numAttributes];
+        double[] values = new double[numAttributes];
+        for (int i = 0; i < dense.length; i++) {
+            int nnz = 0;
+            for (int j = 0; j < numAttributes; j++) {
+                if (j == classIndex || random.nextDouble() < density) {
+                    indices[nnz] = j;
+                    values[nnz] = dense[i].value(j);
+                    nnz++;
+                }
+            }
+            int[] idx = new int[nnz];
+            double[] val = new double[nnz];
+            System.arraycopy(indices, 0, idx, 0, nnz);
+            System.arraycopy(values, 0, val, 0, nnz);
+            sparse[i] = new SparseInstance(dense[i].weight(), val, idx, numAttributes);
+            sparse[i].setDataset(header);
+        }
+        return sparse;
+    }
+
+    /**
+     * Opens one of the shipped datasets from the directory given by the
+     * moa.benchmarks.datasets system property (default: ../datasets). The
+     * extracted ARFF file is read if present, the .zip archive otherwise.
+     */
+    public static ArffFileStream openDataset(String fileName) {
+        File dir = new File(System.getProperty(DATASETS_DIR_PROPERTY, "../datasets"));
+        File file = new File(dir, fileName);
+        if (!file.exists()) {
+            file = new File(dir, fileName.replaceFirst("\\.arff$", ".zip"));
+        }
+        if (!file.exists()) {
+            throw new IllegalStateException("Dataset " + fileName + " not found in "
+                    + dir.getAbsolutePath() + ". Set -D" + DATASETS_DIR_PROPERTY
+                    + " to the directory of the datasets.");
+        }
+        ArffFileStream stream = new ArffFileStream();
+        stream.arffFileOption.setValue(file.getAbsolutePath());
+        stream.prepareForUse();
+        return stream;
+    }
+}
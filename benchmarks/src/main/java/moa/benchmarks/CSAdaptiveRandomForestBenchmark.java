@@ -0,0 +1,113 @@
+/*
+ *    CSAdaptiveRandomForestBenchmark.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import java.util.concurrent.TimeUnit;
+import moa.classifiers.meta.CS_AdaptiveRandomForest;
+import moa.streams.generators.RandomRBFGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Training throughput and prediction latency of CS_AdaptiveRandomForest.
+ *
+ * <p>Parameters: M is the input dimensionality, d the dimensionality each
+ * tree projects to (CS_ARFHoeffdingTree -a), s the ensemble size and j the
+ * number of training threads (CS_AdaptiveRandomForest -j). The forest is
+ * trained on warmupInstances before measurement so that trees have grown
+ * past the root.</p>
+ *
+ * @version $Revision: 1 $
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class CSAdaptiveRandomForestBenchmark {
+
+    private static final int NUM_INSTANCES = 4096;
+
+    @Param({"500", "1500"})
+    public int M;
+
+    @Param({"10", "50"})
+    public int d;
+
+    @Param({"10", "30"})
+    public int s;
+
+    @Param({"1", "4"})
+    public int j;
+
+    @Param({"5000"})
+    public int warmupInstances;
+
+    private CS_AdaptiveRandomForest forest;
+
+    private Instance[] instances;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        RandomRBFGenerator generator = BenchmarkData.newRandomRBF(this.M, 2, 1);
+        this.forest = new CS_AdaptiveRandomForest();
+        this.forest.treeLearnerOption.setValueViaCLIString(
+                "CS_ARFHoeffdingTree -e 2000000 -g 50 -c 0.01 -a " + this.d);
+        this.forest.ensembleSizeOption.setValue(this.s);
+        this.forest.numberOfJobsOption.setValue(this.j);
+        this.forest.setRandomSeed(1);
+        this.forest.prepareForUse();
+        this.forest.setModelContext(generator.getHeader());
+        this.forest.resetLearning();
+        for (int i = 0; i < this.warmupInstances && generator.hasMoreInstances(); i++) {
+            this.forest.trainOnInstance(generator.nextInstance().getData());
+        }
+        this.instances = BenchmarkData.take(generator, NUM_INSTANCES);
+        this.next = 0;
+    }
+
+    private Instance nextInstance() {
+        Instance instance = this.instances[this.next];
+        this.next = (this.next + 1) % NUM_INSTANCES;
+        return instance;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    public void trainOnInstance() {
+        this.forest.trainOnInstance(nextInstance());
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    public double[] getVotesForInstance() {
+        return this.forest.getVotesForInstance(nextInstance());
+    }
+}
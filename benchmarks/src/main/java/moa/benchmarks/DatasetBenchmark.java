@@ -0,0 +1,116 @@
+/*
+ *    DatasetBenchmark.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import java.util.concurrent.TimeUnit;
+import moa.classifiers.meta.CS_AdaptiveRandomForest;
+import moa.streams.ArffFileStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end benchmarks on the sparse datasets shipped in datasets/.
+ *
+ * <p>parseFile measures a full pass of ArffFileStream over the file;
+ * testThenTrain measures one prequential step (getVotesForInstance followed by
+ * trainOnInstance) of CS_AdaptiveRandomForest over the first maxInstances
+ * instances, which are parsed once in the setup.</p>
+ *
+ * <p>parseFile reads the extracted file when present (the .zip archive
+ * otherwise), see {@link BenchmarkData#openDataset(String)}.</p>
+ *
+ * @version $Revision: 1 $
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DatasetBenchmark {
+
+    @Param({"tweet500.arff", "tweet1000.arff", "tweet1500.arff", "nomao.arff",
+        "ads.arff", "ENRONnumeric1.arff"})
+    public String dataset;
+
+    @Param({"10"})
+    public int d;
+
+    @Param({"30"})
+    public int s;
+
+    @Param({"1"})
+    public int j;
+
+    @Param({"10000"})
+    public int maxInstances;
+
+    private CS_AdaptiveRandomForest forest;
+
+    private Instance[] instances;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        ArffFileStream stream = BenchmarkData.openDataset(this.dataset);
+        this.instances = BenchmarkData.take(stream, this.maxInstances);
+        this.forest = new CS_AdaptiveRandomForest();
+        this.forest.treeLearnerOption.setValueViaCLIString(
+                "CS_ARFHoeffdingTree -e 2000000 -g 50 -c 0.01 -a " + this.d);
+        this.forest.ensembleSizeOption.setValue(this.s);
+        this.forest.numberOfJobsOption.setValue(this.j);
+        this.forest.setRandomSeed(1);
+        this.forest.prepareForUse();
+        this.forest.setModelContext(stream.getHeader());
+        this.forest.resetLearning();
+        this.next = 0;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long parseFile() {
+        ArffFileStream stream = BenchmarkData.openDataset(this.dataset);
+        long count = 0;
+        while (stream.hasMoreInstances()) {
+            stream.nextInstance();
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double[] testThenTrain() {
+        Instance instance = this.instances[this.next];
+        this.next = (this.next + 1) % this.instances.length;
+        double[] votes = this.forest.getVotesForInstance(instance);
+        this.forest.trainOnInstance(instance);
+        return votes;
+    }
+}
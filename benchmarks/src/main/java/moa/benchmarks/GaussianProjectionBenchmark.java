@@ -0,0 +1,101 @@
+/*
+ *    GaussianProjectionBenchmark.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import moa.classifiers.trees.CS_HoeffdingTree;
+import moa.streams.generators.RandomRBFGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of CS_HoeffdingTree.GaussianProjection, the projection every
+ * CS-ARF member applies to each instance before training and prediction.
+ *
+ * <p>Parameters: M is the input dimensionality, d the target dimensionality
+ * and density the fraction of non-zero input attributes (1.0 = dense
+ * instances, otherwise SparseInstance).</p>
+ *
+ * @version $Revision: 1 $
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class GaussianProjectionBenchmark {
+
+    private static final int NUM_INSTANCES = 1024;
+
+    @Param({"500", "1000", "1500"})
+    public int M;
+
+    @Param({"10", "50"})
+    public int d;
+
+    @Param({"1.0", "0.05"})
+    public double density;
+
+    private CS_HoeffdingTree tree;
+
+    private double[][] matrix;
+
+    private Instance[] instances;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        RandomRBFGenerator generator = BenchmarkData.newRandomRBF(this.M, 2, 1);
+        this.instances = BenchmarkData.take(generator, NUM_INSTANCES);
+        if (this.density < 1.0) {
+            this.instances = BenchmarkData.sparsify(this.instances,
+                    generator.getHeader(), this.density, 1);
+        }
+        Random random = new Random(1);
+        this.matrix = new double[this.d][this.M];
+        for (int i = 0; i < this.d; i++) {
+            for (int j = 0; j < this.M; j++) {
+                this.matrix[i][j] = random.nextGaussian();
+            }
+        }
+        this.tree = new CS_HoeffdingTree();
+        this.tree.dim.setValue(this.d);
+        this.tree.prepareForUse();
+        this.next = 0;
+    }
+
+    @Benchmark
+    public double[] project() {
+        Instance instance = this.instances[this.next];
+        this.next = (this.next + 1) % NUM_INSTANCES;
+        return this.tree.GaussianProjection(instance, this.d, this.matrix);
+    }
+}
@@ -19,6 +19,8 @@
  */
 package moa;
 
+import javax.management.ObjectName;
+
 import weka.core.Version;
 import moa.core.Globals;
 import moa.core.Measurement;
@@ -27,7 +29,10 @@ import moa.core.TimingUtils;
 import moa.core.WekaUtils;
 import moa.options.ClassOption;
 import moa.tasks.FailedTaskReport;
+import moa.tasks.StandardTaskMonitor;
 import moa.tasks.Task;
+import moa.tasks.TaskMetrics;
+import moa.tasks.TaskMonitor;
 import moa.tasks.TaskThread;
 
 import com.github.javacliparser.FlagOption;
@@ -133,7 +138,13 @@ public class DoTask {
                 Task task = (Task) ClassOption.cliStringToObject(cliString.toString(), Task.class, extraOptions);
                 Object result = null;
                 if (suppressStatusOutputOption.isSet()) {
-                    result = task.doTask();
+                    TaskMonitor taskMonitor = new StandardTaskMonitor();
+                    ObjectName metricsName = TaskMetrics.register(task, taskMonitor);
+                    try {
+                        result = task.doTask(taskMonitor, null);
+                    } finally {
+                        TaskMetrics.unregister(metricsName);
+                    }
                 } else {
                     System.err.println();
                     System.err.println(Globals.getWorkbenchInfoString());
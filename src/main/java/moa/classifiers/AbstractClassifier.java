@@ -181,11 +181,23 @@ public abstract class AbstractClassifier extends AbstractOptionHandler
 
     @Override
     public Measurement[] getModelMeasurements() {
+        return getModelMeasurements(true);
+    }
+
+    /**
+     * Gets the current measurements of this classifier, measuring its size
+     * or not, as measuring it walks the whole model. The size is missing
+     * (NaN) when it is not measured, for the sub-models too.
+     *
+     * @param measureByteSize whether to measure the size of the model
+     * @return an array of measurements to be used in evaluation tasks
+     */
+    public Measurement[] getModelMeasurements(boolean measureByteSize) {
         List<Measurement> measurementList = new LinkedList<Measurement>();
         measurementList.add(new Measurement("model training instances",
                 trainingWeightSeenByModel()));
         measurementList.add(new Measurement("model serialized size (bytes)",
-                measureByteSize()));
+                measureByteSize ? measureByteSize() : Double.NaN));
         Measurement[] modelMeasurements = getModelMeasurementsImpl();
         if (modelMeasurements != null) {
             measurementList.addAll(Arrays.asList(modelMeasurements));
@@ -195,7 +207,9 @@ public abstract class AbstractClassifier extends AbstractOptionHandler
         if ((subModels != null) && (subModels.length > 0)) {
             List<Measurement[]> subMeasurements = new LinkedList<Measurement[]>();
             for (Learner subModel : subModels) {
-                if (subModel != null) {
+                if (subModel instanceof AbstractClassifier) {
+                    subMeasurements.add(((AbstractClassifier) subModel).getModelMeasurements(measureByteSize));
+                } else if (subModel != null) {
                     subMeasurements.add(subModel.getModelMeasurements());
                 }
             }
@@ -1,5 +1,5 @@
 /*
- *    NaiveBayes.java
+ *    NaiveBayesCS.java
  *    Copyright (C) 2007 University of Waikato, Hamilton, New Zealand
  *    @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  *
@@ -15,102 +15,205 @@
  *
  *    You should have received a copy of the GNU General Public License
  *    along with this program. If not, see <http://www.gnu.org/licenses/>.
- *    
+ *
  */
 package moa.classifiers.bayes;
 
 import com.github.javacliparser.IntOption;
-import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import java.util.Arrays;
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.MultiClassClassifier;
-import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
-import moa.classifiers.core.attributeclassobservers.GaussianNumericAttributeClassObserver;
-import moa.classifiers.core.attributeclassobservers.NominalAttributeClassObserver;
-import moa.core.AutoExpandVector;
-import moa.core.DoubleVector;
+import moa.core.GaussianEstimator;
 import moa.core.Measurement;
 import moa.core.StringUtils;
 
-import moa.core.InstanceExample;
-import com.yahoo.labs.samoa.instances.Instance;
-import com.yahoo.labs.samoa.instances.Instances;
-import com.yahoo.labs.samoa.instances.InstancesHeader;
-import java.util.Random;
-import moa.core.InstanceExample;
-import static moa.streams.filters.CompressSensingGaussian.multiply;
-
 /**
- * Naive Bayes incremental learner.
+ * Compressed sensing Naive Bayes incremental learner.
  *
- * <p>Performs classic bayesian prediction while making naive assumption that
- * all inputs are independent.<br /> Naive Bayes is a classiﬁer algorithm known
- * for its simplicity and low computational cost. Given n different classes, the
- * trained Naive Bayes classiﬁer predicts for every unlabelled instance I the
- * class C to which it belongs with high accuracy.</p>
+ * <p>Each instance is projected into a space of d dimensions using a Gaussian
+ * random matrix, and a Gaussian Naive Bayes is trained and queried on the
+ * projected values only. The projection matrix is sized from the header of
+ * the stream on the first instance, and is stored per input attribute so
+ * that projecting an instance costs O(nnz * d), nnz being the number of
+ * non-zero values of the (sparse) instance. The per-class Gaussian
+ * estimators are kept in primitive arrays, and predictions are computed in
+ * log space to avoid underflow.</p>
  *
- * <p>Parameters:</p> <ul> <li>-r : Seed for random behaviour of the
- * classifier</li> </ul>
+ * <p>Parameters:</p> <ul> <li>-d : The target feature dimension</li>
+ * <li>-r : Seed for the random projection</li> </ul>
  *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
-public class NaiveBayesCS extends AbstractClassifier  implements MultiClassClassifier {
+public class NaiveBayesCS extends AbstractClassifier implements MultiClassClassifier {
 
     private static final long serialVersionUID = 1L;
-     public IntOption dim = new IntOption("FeatureDimension", 'd',
-            "the target feature dimension.", 10);
-    protected InstancesHeader streamHeader;
+
+    public IntOption dim = new IntOption("FeatureDimension", 'd',
+            "the target feature dimension.", 10, 1, Integer.MAX_VALUE);
+
     @Override
     public String getPurposeString() {
-        return "Naive Bayes classifier: performs classic bayesian prediction while making naive assumption that all inputs are independent.";
+        return "Naive Bayes classifier on a Gaussian random projection of the instances.";
     }
-    protected DoubleVector observedClassDistribution;
 
-    protected AutoExpandVector<AttributeClassObserver> attributeObservers;
-protected double[][] GaussMatrix = new double[this.dim.getValue()][857-1];
+    protected int numAttributes;
+
+    protected int numClasses;
+
+    protected int classIndex;
+
+    // Projection matrix, column j (d values) at [j * d, (j + 1) * d)
+    protected double[] projection;
+
+    // Per class weight, and per class and projected dimension estimators at [c * d + i]
+    protected double[] classWeights;
+
+    protected double[] means;
+
+    protected double[] varianceSums;
+
+    protected double[] weightSums;
+
+    // Buffer for the projected values of the current instance
+    protected double[] projected;
+
     @Override
     public void resetLearningImpl() {
-        Random r = new Random();  
-        
-        
-       
-        for(int i=0; i < this.dim.getValue(); i++){
-            for(int j = 0; j < 857-1; j++){
-                this.GaussMatrix[i][j]= r.nextGaussian();
+        this.projection = null;
+        this.classWeights = null;
+        this.means = null;
+        this.varianceSums = null;
+        this.weightSums = null;
+        this.projected = null;
+    }
+
+    protected void initialize(Instances header) {
+        int d = this.dim.getValue();
+        this.numAttributes = header.numAttributes();
+        this.numClasses = header.numClasses();
+        this.classIndex = header.classIndex();
+        this.projection = new double[this.numAttributes * d];
+        for (int j = 0; j < this.numAttributes; j++) {
+            if (j != this.classIndex) {
+                for (int i = 0; i < d; i++) {
+                    this.projection[j * d + i] = this.classifierRandom.nextGaussian();
+                }
+            }
+        }
+        this.classWeights = new double[this.numClasses];
+        this.means = new double[this.numClasses * d];
+        this.varianceSums = new double[this.numClasses * d];
+        this.weightSums = new double[this.numClasses * d];
+        this.projected = new double[d];
+    }
+
+    /**
+     * Projects the instance into the projected buffer, iterating over its
+     * non-zero values only. Missing values are ignored.
+     */
+    protected void project(Instance inst) {
+        int d = this.dim.getValue();
+        Arrays.fill(this.projected, 0.0);
+        for (int k = 0; k < inst.numValues(); k++) {
+            int j = inst.index(k);
+            if (j == this.classIndex || j >= this.numAttributes || inst.isMissingSparse(k)) {
+                continue;
+            }
+            double value = inst.valueSparse(k);
+            if (value != 0.0) {
+                int offset = j * d;
+                for (int i = 0; i < d; i++) {
+                    this.projected[i] += value * this.projection[offset + i];
+                }
             }
         }
-        this.observedClassDistribution = new DoubleVector();
-        this.attributeObservers = new AutoExpandVector<AttributeClassObserver>();
-    this.streamHeader = null;
-    }
- 
-    public InstancesHeader getHeader() {
-        return this.streamHeader;
     }
 
     @Override
     public void trainOnInstanceImpl(Instance inst) {
-        
-        Instance in;
-        in = transformedInstance(inst, GaussianProjection(inst,this.dim.getValue(), this.GaussMatrix));
-        this.observedClassDistribution.addToValue((int) inst.classValue(), inst.weight()); 
-        for (int i = 0; i < inst.numAttributes() - 1; i++) {
-           
-            int instAttIndex = modelAttIndexToInstanceAttIndex(i, inst);
-            AttributeClassObserver obs = this.attributeObservers.get(i);
-            if (obs == null) {
-                obs = inst.attribute(instAttIndex).isNominal() ? newNominalClassObserver()
-                        : newNumericClassObserver();
-                this.attributeObservers.set(i, obs);
+        if (this.projection == null) {
+            initialize(inst.dataset());
+        }
+        double weight = inst.weight();
+        if (inst.classIsMissing() || weight <= 0.0) {
+            return;
+        }
+        int classValue = (int) inst.classValue();
+        project(inst);
+        int d = this.dim.getValue();
+        this.classWeights[classValue] += weight;
+        // Same incremental update as GaussianEstimator.addObservation
+        for (int i = 0, e = classValue * d; i < d; i++, e++) {
+            double value = this.projected[i];
+            if (this.weightSums[e] > 0.0) {
+                this.weightSums[e] += weight;
+                double lastMean = this.means[e];
+                this.means[e] += weight * (value - lastMean) / this.weightSums[e];
+                this.varianceSums[e] += weight * (value - lastMean) * (value - this.means[e]);
+            } else {
+                this.means[e] = value;
+                this.weightSums[e] = weight;
             }
-            obs.observeAttributeClass(inst.value(instAttIndex), (int) inst.classValue(), inst.weight());
         }
     }
 
     @Override
     public double[] getVotesForInstance(Instance inst) {
-        return doNaiveBayesPrediction(inst, this.observedClassDistribution,
-                this.attributeObservers);
+        if (this.projection == null) {
+            initialize(inst.dataset());
+        }
+        double[] votes = new double[this.numClasses];
+        double observedClassSum = 0.0;
+        for (int c = 0; c < this.numClasses; c++) {
+            observedClassSum += this.classWeights[c];
+        }
+        if (observedClassSum <= 0.0) {
+            return votes;
+        }
+        project(inst);
+        int d = this.dim.getValue();
+        double maxLogVote = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < this.numClasses; c++) {
+            double logVote = Math.log(this.classWeights[c] / observedClassSum);
+            for (int i = 0, e = c * d; i < d && logVote > Double.NEGATIVE_INFINITY; i++, e++) {
+                logVote += logProbabilityDensity(this.projected[i], e);
+            }
+            votes[c] = logVote;
+            if (logVote > maxLogVote) {
+                maxLogVote = logVote;
+            }
+        }
+        if (maxLogVote == Double.NEGATIVE_INFINITY) {
+            // No class gives a non-zero density, fall back to the class prior
+            for (int c = 0; c < this.numClasses; c++) {
+                votes[c] = this.classWeights[c] / observedClassSum;
+            }
+            return votes;
+        }
+        for (int c = 0; c < this.numClasses; c++) {
+            votes[c] = Math.exp(votes[c] - maxLogVote);
+        }
+        return votes;
+    }
+
+    /**
+     * Log of GaussianEstimator.probabilityDensity for the estimator e.
+     */
+    protected double logProbabilityDensity(double value, int e) {
+        double weightSum = this.weightSums[e];
+        if (weightSum > 0.0) {
+            double variance = weightSum > 1.0 ? this.varianceSums[e] / (weightSum - 1.0) : 0.0;
+            if (variance > 0.0) {
+                double diff = value - this.means[e];
+                return -Math.log(GaussianEstimator.NORMAL_CONSTANT * Math.sqrt(variance))
+                        - diff * diff / (2.0 * variance);
+            }
+            return value == this.means[e] ? 0.0 : Double.NEGATIVE_INFINITY;
+        }
+        return Double.NEGATIVE_INFINITY;
     }
 
     @Override
@@ -118,67 +221,27 @@ protected double[][] GaussMatrix = new double[this.dim.getValue()][857-1];
         return null;
     }
 
-    public static double[] multiply(double[][] a, double[] x) {
-        int m = a.length;
-        int n = a[0].length;
-        if (x.length != n) throw new RuntimeException("Illegal matrix dimensions.");
-        double[] y = new double[m];
-        for (int i = 0; i < m; i++)
-            for (int j = 0; j < n; j++)
-                y[i] += a[i][j] * x[j];
-        return y;
-    }
-    
-    public DenseInstance transformedInstance(Instance sparseInst, double [] val) {
-        
-        Instances header = this.streamHeader;
-        double[] attributeValues = new double[this.dim.getValue()];
-
-        for(int i = 0 ; i < header.numAttributes()-1 ; i++) {
-            attributeValues[i] = val[i];
-        }
-
-        attributeValues[attributeValues.length-1] = sparseInst.classValue();
-        DenseInstance newInstance = new DenseInstance(1.0, attributeValues);
-        newInstance.setDataset(header);
-        return newInstance;
-    }
-    
-        public  double[] GaussianProjection(Instance instance, int n, double[][] gm) {
-       
-
-        double [] denseValues = new double[n];
-      
-        double[] ins = new double [instance.numAttributes()-1]; 
-        for(int i = 0 ; i < instance.numAttributes()-1 ; i++) {
-            ins[i] = instance.value(i);
-        }
-         denseValues = multiply(gm, ins);
-         
-        return denseValues;
-    }
-        
     @Override
     public void getModelDescription(StringBuilder out, int indent) {
-        for (int i = 0; i < this.observedClassDistribution.numValues(); i++) {
+        if (this.classWeights == null) {
+            return;
+        }
+        int d = this.dim.getValue();
+        for (int c = 0; c < this.numClasses; c++) {
             StringUtils.appendIndented(out, indent, "Observations for ");
             out.append(getClassNameString());
             out.append(" = ");
-            out.append(getClassLabelString(i));
+            out.append(getClassLabelString(c));
             out.append(":");
             StringUtils.appendNewlineIndented(out, indent + 1,
                     "Total observed weight = ");
-            out.append(this.observedClassDistribution.getValue(i));
-            out.append(" / prob = ");
-            out.append(this.observedClassDistribution.getValue(i)
-                    / this.observedClassDistribution.sumOfValues());
-            for (int j = 0; j < this.attributeObservers.size(); j++) {
+            out.append(this.classWeights[c]);
+            for (int i = 0, e = c * d; i < d; i++, e++) {
                 StringUtils.appendNewlineIndented(out, indent + 1,
-                        "Observations for ");
-                out.append(getAttributeNameString(j));
-                out.append(": ");
-                // TODO: implement observer output
-                out.append(this.attributeObservers.get(j));
+                        "Projected attribute " + (i + 1) + ": mean = ");
+                out.append(this.means[e]);
+                out.append(" / variance sum = ");
+                out.append(this.varianceSums[e]);
             }
             StringUtils.appendNewline(out);
         }
@@ -186,68 +249,6 @@ protected double[][] GaussMatrix = new double[this.dim.getValue()][857-1];
 
     @Override
     public boolean isRandomizable() {
-        return false;
-    }
-
-    protected AttributeClassObserver newNominalClassObserver() {
-        return new NominalAttributeClassObserver();
-    }
-
-    protected AttributeClassObserver newNumericClassObserver() {
-        return new GaussianNumericAttributeClassObserver();
-    }
-
-    public static double[] doNaiveBayesPrediction(Instance inst,
-            DoubleVector observedClassDistribution,
-            AutoExpandVector<AttributeClassObserver> attributeObservers) {
-        double[] votes = new double[observedClassDistribution.numValues()];
-        double observedClassSum = observedClassDistribution.sumOfValues();
-        for (int classIndex = 0; classIndex < votes.length; classIndex++) {
-            votes[classIndex] = observedClassDistribution.getValue(classIndex)
-                    / observedClassSum;
-            for (int attIndex = 0; attIndex < inst.numAttributes() - 1; attIndex++) {
-                int instAttIndex = modelAttIndexToInstanceAttIndex(attIndex,
-                        inst);
-                AttributeClassObserver obs = attributeObservers.get(attIndex);
-                if ((obs != null) && !inst.isMissing(instAttIndex)) {
-                    votes[classIndex] *= obs.probabilityOfAttributeValueGivenClass(inst.value(instAttIndex), classIndex);
-                }
-            }
-        }
-        // TODO: need logic to prevent underflow?
-        return votes;
-    }
-
-    // Naive Bayes Prediction using log10 for VFDR rules 
-    public static double[] doNaiveBayesPredictionLog(Instance inst,
-            DoubleVector observedClassDistribution,
-            AutoExpandVector<AttributeClassObserver> observers, AutoExpandVector<AttributeClassObserver> observers2) {
-        AttributeClassObserver obs;
-        double[] votes = new double[observedClassDistribution.numValues()];
-        double observedClassSum = observedClassDistribution.sumOfValues();
-        for (int classIndex = 0; classIndex < votes.length; classIndex++) {
-            votes[classIndex] = Math.log10(observedClassDistribution.getValue(classIndex)
-                    / observedClassSum);
-            for (int attIndex = 0; attIndex < inst.numAttributes() - 1; attIndex++) {
-                int instAttIndex = modelAttIndexToInstanceAttIndex(attIndex,
-                        inst);
-                if (inst.attribute(instAttIndex).isNominal()) {
-                    obs = observers.get(attIndex);
-                } else {
-                    obs = observers2.get(attIndex);
-                }
-
-                if ((obs != null) && !inst.isMissing(instAttIndex)) {
-                    votes[classIndex] += Math.log10(obs.probabilityOfAttributeValueGivenClass(inst.value(instAttIndex), classIndex));
-
-                }
-            }
-        }
-        return votes;
-
-    }
-
-    public void manageMemory(int currentByteSize, int maxByteSize) {
-        // TODO Auto-generated method stub
+        return true;
     }
 }
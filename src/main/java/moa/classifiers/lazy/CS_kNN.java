@@ -0,0 +1,259 @@
+/*
+ *    CS_kNN.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.lazy;
+
+import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import java.util.Arrays;
+import moa.classifiers.AbstractClassifier;
+import moa.classifiers.MultiClassClassifier;
+import moa.core.Measurement;
+
+/**
+ * Compressed Sensing k Nearest Neighbor.<p>
+ *
+ * Each instance is projected once into d dimensions using a Gaussian random
+ * matrix (sized from the stream header, applied on the non-zero values of the
+ * instance only). The sliding window keeps the projected vectors in a single
+ * contiguous array used as a ring buffer, with the labels in a parallel array,
+ * so that the neighbour search is a linear scan over primitive values.<p>
+ *
+ * Valid options are:<p>
+ *
+ * -k number of neighbours <br> -w max instances <br> -d target feature dimension <br>
+ * -r seed for the random projection <br>
+ *
+ * @version $Revision: 1 $
+ */
+public class CS_kNN extends AbstractClassifier implements MultiClassClassifier {
+
+    private static final long serialVersionUID = 1L;
+
+    public IntOption kOption = new IntOption("k", 'k', "The number of neighbors", 10, 1, Integer.MAX_VALUE);
+
+    public IntOption limitOption = new IntOption("limit", 'w', "The maximum number of instances to store", 1000, 1, Integer.MAX_VALUE);
+
+    public IntOption dim = new IntOption("FeatureDimension", 'd',
+            "the target feature dimension.", 10, 1, Integer.MAX_VALUE);
+
+    @Override
+    public String getPurposeString() {
+        return "kNN on a Gaussian random projection of the instances.";
+    }
+
+    protected int numAttributes;
+
+    protected int numClasses;
+
+    protected int classIndex;
+
+    // Projection matrix, column j (d values) at [j * d, (j + 1) * d)
+    protected double[] projection;
+
+    // Ring buffer of projected instances: instance i at [i * d, (i + 1) * d)
+    protected double[] windowValues;
+
+    protected int[] windowLabels;
+
+    // Next position to write and number of instances stored
+    protected int windowHead;
+
+    protected int windowSize;
+
+    // Buffers for the projected instance and the k nearest neighbours (max-heap on distance)
+    protected double[] projected;
+
+    protected double[] heapDistances;
+
+    protected int[] heapLabels;
+
+    @Override
+    public void resetLearningImpl() {
+        this.projection = null;
+        this.windowValues = null;
+        this.windowLabels = null;
+        this.windowHead = 0;
+        this.windowSize = 0;
+    }
+
+    protected void initialize(Instances header) {
+        int d = this.dim.getValue();
+        int limit = this.limitOption.getValue();
+        this.numAttributes = header.numAttributes();
+        this.numClasses = header.numClasses();
+        this.classIndex = header.classIndex();
+        this.projection = new double[this.numAttributes * d];
+        for (int j = 0; j < this.numAttributes; j++) {
+            if (j != this.classIndex) {
+                for (int i = 0; i < d; i++) {
+                    this.projection[j * d + i] = this.classifierRandom.nextGaussian();
+                }
+            }
+        }
+        this.windowValues = new double[limit * d];
+        this.windowLabels = new int[limit];
+        this.windowHead = 0;
+        this.windowSize = 0;
+        this.projected = new double[d];
+        this.heapDistances = new double[this.kOption.getValue()];
+        this.heapLabels = new int[this.kOption.getValue()];
+    }
+
+    /**
+     * Projects the instance into the given array at offset, iterating over
+     * its non-zero values only. Missing values are ignored.
+     */
+    protected void project(Instance inst, double[] target, int targetOffset) {
+        int d = this.dim.getValue();
+        Arrays.fill(target, targetOffset, targetOffset + d, 0.0);
+        for (int k = 0; k < inst.numValues(); k++) {
+            int j = inst.index(k);
+            if (j == this.classIndex || j >= this.numAttributes || inst.isMissingSparse(k)) {
+                continue;
+            }
+            double value = inst.valueSparse(k);
+            if (value != 0.0) {
+                int offset = j * d;
+                for (int i = 0; i < d; i++) {
+                    target[targetOffset + i] += value * this.projection[offset + i];
+                }
+            }
+        }
+    }
+
+    @Override
+    public void trainOnInstanceImpl(Instance inst) {
+        if (this.projection == null) {
+            initialize(inst.dataset());
+        }
+        if (inst.classIsMissing()) {
+            return;
+        }
+        // Project straight into the window, overwriting the oldest instance when full
+        project(inst, this.windowValues, this.windowHead * this.dim.getValue());
+        this.windowLabels[this.windowHead] = (int) inst.classValue();
+        this.windowHead = (this.windowHead + 1) % this.windowLabels.length;
+        if (this.windowSize < this.windowLabels.length) {
+            this.windowSize++;
+        }
+    }
+
+    @Override
+    public double[] getVotesForInstance(Instance inst) {
+        if (this.projection == null) {
+            initialize(inst.dataset());
+        }
+        double[] v = new double[this.numClasses];
+        if (this.windowSize == 0) {
+            return v;
+        }
+        project(inst, this.projected, 0);
+        int d = this.dim.getValue();
+        int k = Math.min(this.kOption.getValue(), this.windowSize);
+        int heapSize = 0;
+        for (int n = 0; n < this.windowSize; n++) {
+            double distance = squaredDistance(this.projected, this.windowValues, n * d, d);
+            if (heapSize < k) {
+                heapSize++;
+                siftUp(heapSize - 1, distance, this.windowLabels[n]);
+            } else if (distance < this.heapDistances[0]) {
+                siftDown(heapSize, distance, this.windowLabels[n]);
+            }
+        }
+        for (int i = 0; i < heapSize; i++) {
+            v[this.heapLabels[i]]++;
+        }
+        return v;
+    }
+
+    /**
+     * Squared Euclidean distance between a and the d values of b at offset.
+     * The loop is unrolled so that the JIT can vectorize it.
+     */
+    protected static double squaredDistance(double[] a, double[] b, int offset, int d) {
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        int i = 0;
+        for (; i + 3 < d; i += 4) {
+            double d0 = a[i] - b[offset + i];
+            double d1 = a[i + 1] - b[offset + i + 1];
+            double d2 = a[i + 2] - b[offset + i + 2];
+            double d3 = a[i + 3] - b[offset + i + 3];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+        }
+        for (; i < d; i++) {
+            double di = a[i] - b[offset + i];
+            s0 += di * di;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    // Inserts a neighbour at position pos of the max-heap and restores the heap order
+    private void siftUp(int pos, double distance, int label) {
+        while (pos > 0) {
+            int parent = (pos - 1) / 2;
+            if (this.heapDistances[parent] >= distance) {
+                break;
+            }
+            this.heapDistances[pos] = this.heapDistances[parent];
+            this.heapLabels[pos] = this.heapLabels[parent];
+            pos = parent;
+        }
+        this.heapDistances[pos] = distance;
+        this.heapLabels[pos] = label;
+    }
+
+    // Replaces the farthest neighbour (the root) and restores the heap order
+    private void siftDown(int heapSize, double distance, int label) {
+        int pos = 0;
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && this.heapDistances[child + 1] > this.heapDistances[child]) {
+                child++;
+            }
+            if (this.heapDistances[child] <= distance) {
+                break;
+            }
+            this.heapDistances[pos] = this.heapDistances[child];
+            this.heapLabels[pos] = this.heapLabels[child];
+            pos = child;
+        }
+        this.heapDistances[pos] = distance;
+        this.heapLabels[pos] = label;
+    }
+
+    @Override
+    protected Measurement[] getModelMeasurementsImpl() {
+        return null;
+    }
+
+    @Override
+    public void getModelDescription(StringBuilder out, int indent) {
+    }
+
+    @Override
+    public boolean isRandomizable() {
+        return true;
+    }
+}
@@ -22,6 +22,7 @@ import com.yahoo.labs.samoa.instances.Instance;
 
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.MultiClassClassifier;
+import moa.core.ByteSizeEstimator;
 import moa.core.DoubleVector;
 import moa.core.InstanceExample;
 import moa.core.Measurement;
@@ -79,7 +80,7 @@ import moa.classifiers.core.driftdetection.ChangeDetector;
  * @author Heitor Murilo Gomes (heitor_murilo_gomes at yahoo dot com dot br)
  * @version $Revision: 1 $
  */
-public class AdaptiveRandomForest extends AbstractClassifier implements MultiClassClassifier {
+public class AdaptiveRandomForest extends AbstractClassifier implements MultiClassClassifier, ByteSizeEstimator {
 
     @Override
     public String getPurposeString() {
@@ -228,6 +229,28 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
         return null;
     }
 
+    /**
+     * Estimates the size of the forest as the sum of the estimates of its
+     * trees and background trees, -1 until all of them have one.
+     */
+    @Override
+    public long estimateByteSize() {
+        if (this.ensemble == null) {
+            return -1;
+        }
+        long byteSize = 0;
+        for (ARFBaseLearner member : this.ensemble) {
+            for (ARFBaseLearner learner = member; learner != null; learner = learner.bkgLearner) {
+                long treeByteSize = learner.classifier.estimateByteSize();
+                if (treeByteSize < 0) {
+                    return -1;
+                }
+                byteSize += treeByteSize;
+            }
+        }
+        return byteSize;
+    }
+
     protected void initEnsemble(Instance instance) {
         // Init the ensemble.
         int ensembleSize = this.ensembleSizeOption.getValue();
@@ -19,6 +19,7 @@
 package moa.classifiers.meta;
 
 import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
 
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.MultiClassClassifier;
@@ -27,16 +28,20 @@ import moa.core.InstanceExample;
 import moa.core.Measurement;
 import moa.core.MiscUtils;
 import moa.options.ClassOption;
+import moa.streams.InstanceStream;
 
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import com.github.javacliparser.MultiChoiceOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 import moa.classifiers.trees.CS_ARFHoeffdingTree;
+import moa.classifiers.trees.CS_HoeffdingTree;
 import moa.evaluation.BasicClassificationPerformanceEvaluator;
 
 import java.util.concurrent.ExecutorService;
@@ -74,6 +79,18 @@ import moa.classifiers.core.driftdetection.ChangeDetector;
  * <li>-w : Should use weighted voting?</li>
  * <li>-u : Should use drift detection? If disabled then bkg learner is also disabled</li>
  * <li>-q : Should use bkg learner? If disabled then reset tree immediately</li>
+ * <li>-e : Anytime voting: query trees by decreasing weight and stop once the
+ * remaining weight cannot change the predicted class</li>
+ * <li>-b : Time budget (microseconds) per prediction for anytime voting</li>
+ * <li>-t : Target throughput (instances per second). If set, the ensemble size 
+ * is adapted: the weakest tree is removed when the learner is slower than the 
+ * target and a new tree is added when there is enough headroom</li>
+ * <li>-n : Minimum ensemble size when adapting the ensemble size</li>
+ * <li>-z : Maximum ensemble size when adapting the ensemble size</li>
+ * <li>-c : Number of instances between ensemble size adaptations</li>
+ * <li>-g : Fraction of the target throughput exceeded before adding a tree</li>
+ * <li>-k : Fraction of the target throughput missed before removing a tree</li>
+ * <li>-v : Weight of instances a tree is evaluated on before it can be removed</li>
  * </ul>
  *
  * @author Heitor Murilo Gomes (heitor_murilo_gomes at yahoo dot com dot br)
@@ -124,6 +141,38 @@ public class CS_AdaptiveRandomForest extends AbstractClassifier implements Multi
 
     public FlagOption disableBackgroundLearnerOption = new FlagOption("disableBackgroundLearner", 'q', 
         "Should use bkg learner? If disabled then reset tree immediately.");
+
+    public FlagOption anytimeVoteOption = new FlagOption("anytimeVote", 'e',
+        "Query trees by decreasing weight and stop once the remaining weight cannot change the predicted class.");
+
+    public IntOption voteTimeBudgetOption = new IntOption("voteTimeBudget", 'b',
+        "Maximum time (microseconds) spent on a prediction with anytime voting, the best-so-far vote is returned when exceeded (0 = no budget).",
+        0, 0, Integer.MAX_VALUE);
+
+    public FloatOption targetThroughputOption = new FloatOption("targetThroughput", 't',
+        "Target throughput (instances per second) used to adapt the ensemble size (0 = fixed ensemble size).", 
+        0.0, 0.0, Double.MAX_VALUE);
+
+    public IntOption minEnsembleSizeOption = new IntOption("minEnsembleSize", 'n',
+        "The minimum number of trees when adapting the ensemble size.", 1, 1, Integer.MAX_VALUE);
+
+    public IntOption maxEnsembleSizeOption = new IntOption("maxEnsembleSize", 'z',
+        "The maximum number of trees when adapting the ensemble size.", 100, 1, Integer.MAX_VALUE);
+
+    public IntOption adaptSizePeriodOption = new IntOption("adaptSizePeriod", 'c',
+        "Number of instances between ensemble size adaptations.", 1000, 1, Integer.MAX_VALUE);
+
+    public FloatOption addMarginOption = new FloatOption("addMargin", 'g',
+        "Fraction by which the throughput estimated with one more tree must exceed the target to add a tree.", 
+        0.1, 0.0, 1.0);
+
+    public FloatOption removeMarginOption = new FloatOption("removeMargin", 'k',
+        "Fraction by which the throughput must miss the target to remove a tree.", 
+        0.1, 0.0, 1.0);
+
+    public IntOption removalGracePeriodOption = new IntOption("removalGracePeriod", 'v',
+        "Weight of instances a tree must have been evaluated on since it was created or reset before it can be removed.", 
+        1000, 0, Integer.MAX_VALUE);
   
         protected static final int FEATURES_M = 0;
     protected static final int FEATURES_SQRT = 1;
@@ -136,6 +185,17 @@ public class CS_AdaptiveRandomForest extends AbstractClassifier implements Multi
     protected long instancesSeen;
     protected int subspaceSize;
     protected BasicClassificationPerformanceEvaluator evaluator;
+    // Header of the projected space, shared by all trees and background trees
+    protected InstancesHeader projectedHeader;
+    // Anytime voting statistics
+    protected long anytimePredictions;
+    protected long anytimeTreesQueried;
+    // Adaptive ensemble size: time spent predicting and training since the last adaptation
+    protected long adaptiveTimeNanos;
+    protected long adaptiveInstances;
+    // Whether the first period, which includes initEnsemble, has elapsed
+    protected boolean adaptiveWarmedUp;
+    protected int nextLearnerIndex;
 
     private ExecutorService executor;
     
@@ -143,9 +203,16 @@ public class CS_AdaptiveRandomForest extends AbstractClassifier implements Multi
     public void resetLearningImpl() {
         // Reset attributes
         this.ensemble = null;
+        this.projectedHeader = null;
         this.subspaceSize = 0;
         this.instancesSeen = 0;
         this.evaluator = new BasicClassificationPerformanceEvaluator();
+        this.anytimePredictions = 0;
+        this.anytimeTreesQueried = 0;
+        this.adaptiveTimeNanos = 0;
+        this.adaptiveInstances = 0;
+        this.adaptiveWarmedUp = false;
+        this.nextLearnerIndex = 0;
         
         // Multi-threading
         int numberOfJobs;
@@ -161,6 +228,7 @@ public class CS_AdaptiveRandomForest extends AbstractClassifier implements Multi
 
     @Override
     public void trainOnInstanceImpl(Instance instance) {
+        long start = isAdaptiveSize() ? System.nanoTime() : 0;
         ++this.instancesSeen;
         if(this.ensemble == null) 
             initEnsemble(instance);
@@ -189,13 +257,30 @@ public class CS_AdaptiveRandomForest extends AbstractClassifier implements Multi
                 throw new RuntimeException("Could not call invokeAll() on training threads.");
             }
         }
+        if(isAdaptiveSize()) {
+            this.adaptiveTimeNanos += System.nanoTime() - start;
+            if(++this.adaptiveInstances >= this.adaptSizePeriodOption.getValue())
+                adaptEnsembleSize();
+        }
     }
 
     @Override
     public double[] getVotesForInstance(Instance instance) {
+        long start = isAdaptiveSize() ? System.nanoTime() : 0;
         Instance testInstance = instance.copy();
         if(this.ensemble == null) 
             initEnsemble(testInstance);
+        double[] votes = this.anytimeVoteOption.isSet() ? 
+            getVotesForInstanceAnytime(testInstance) : getVotesForInstanceCombined(testInstance);
+        if(isAdaptiveSize())
+            this.adaptiveTimeNanos += System.nanoTime() - start;
+        return votes;
+    }
+
+    /**
+     * Combines the (weighted) votes of all trees. 
+     */
+    protected double[] getVotesForInstanceCombined(Instance testInstance) {
         DoubleVector combinedVote = new DoubleVector();
 
         for(int i = 0 ; i < this.ensemble.length ; ++i) {
@@ -214,6 +299,148 @@ public class CS_AdaptiveRandomForest extends AbstractClassifier implements Multi
         return combinedVote.getArrayRef();
     }
 
+    /**
+     * Anytime prediction. Trees are queried by decreasing weight and the loop 
+     * stops as soon as the total weight of the trees not yet queried is 
+     * smaller than the margin between the two best classes, i.e., when the 
+     * remaining votes cannot change the argmax. The returned vote is a partial 
+     * sum, but its argmax is the same as the one of the full vote, unless 
+     * the time budget (voteTimeBudgetOption) interrupts the loop first. 
+     */
+    protected double[] getVotesForInstanceAnytime(Instance instance) {
+        long budget = this.voteTimeBudgetOption.getValue() * 1000L;
+        long start = budget > 0 ? System.nanoTime() : 0;
+        
+        final double[] weights = new double[this.ensemble.length];
+        Integer[] order = new Integer[this.ensemble.length];
+        double remainingWeight = 0.0;
+        for(int i = 0 ; i < this.ensemble.length ; ++i) {
+            weights[i] = getVoteWeight(this.ensemble[i]);
+            order[i] = i;
+            remainingWeight += weights[i];
+        }
+        Arrays.sort(order, (i, j) -> Double.compare(weights[j], weights[i]));
+        
+        DoubleVector combinedVote = new DoubleVector();
+        int queried = 0;
+        while(queried < order.length) {
+            int i = order[queried++];
+            remainingWeight -= weights[i];
+            DoubleVector vote = new DoubleVector(this.ensemble[i].getVotesForInstance(instance));
+            if (vote.sumOfValues() > 0.0) {
+                vote.normalize();
+                vote.scaleValues(weights[i]);
+                combinedVote.addValues(vote);
+            }
+            if(voteMargin(combinedVote) > remainingWeight)
+                break;
+            if(budget > 0 && System.nanoTime() - start >= budget)
+                break;
+        }
+        this.anytimePredictions++;
+        this.anytimeTreesQueried += queried;
+        return combinedVote.getArrayRef();
+    }
+    
+    /**
+     * The weight of a tree vote after normalization, as in getVotesForInstance: 
+     * the tree accuracy if weighted voting is enabled and the accuracy is 
+     * positive, 1 otherwise. 
+     */
+    protected double getVoteWeight(ARFBaseLearner learner) {
+        if(! this.disableWeightedVote.isSet() && learner.evaluator.getTotalWeightObserved() > 0) {
+            double acc = learner.evaluator.getFractionCorrectlyClassified() * 100.0;
+            if(acc > 0.0)
+                return acc;
+        }
+        return 1.0;
+    }
+    
+    /**
+     * Difference between the largest and the second largest value of a 
+     * (non-negative) vote. Classes not present in the vote count as 0. 
+     */
+    protected static double voteMargin(DoubleVector vote) {
+        double best = 0.0;
+        double second = 0.0;
+        for(int v = 0 ; v < vote.numValues() ; ++v) {
+            double value = vote.getValue(v);
+            if(value > best) {
+                second = best;
+                best = value;
+            }
+            else if(value > second) {
+                second = value;
+            }
+        }
+        return best - second;
+    }
+
+    protected boolean isAdaptiveSize() {
+        return this.targetThroughputOption.getValue() > 0.0;
+    }
+
+    /**
+     * Adapts the ensemble size to the target throughput. The throughput is 
+     * measured on the time spent in getVotesForInstance and trainOnInstance 
+     * since the last adaptation. Since the cost is roughly linear in the 
+     * number of trees, a tree is added only if the throughput estimated with 
+     * one more tree (throughput * s / (s + 1)) exceeds the target by the add 
+     * margin, and removed only if the throughput misses the target by the 
+     * remove margin, so that the size does not oscillate around the target. 
+     * The first period, which includes the creation of the ensemble, is 
+     * not used. 
+     */
+    protected void adaptEnsembleSize() {
+        double seconds = this.adaptiveTimeNanos / 1.0e9;
+        double throughput = seconds > 0.0 ? this.adaptiveInstances / seconds : Double.MAX_VALUE;
+        double target = this.targetThroughputOption.getValue();
+        int size = this.ensemble.length;
+        int minSize = this.minEnsembleSizeOption.getValue();
+        int maxSize = Math.max(minSize, this.maxEnsembleSizeOption.getValue());
+        
+        if(!this.adaptiveWarmedUp) {
+            this.adaptiveWarmedUp = true;
+        }
+        else if(throughput < target * (1.0 - this.removeMarginOption.getValue()) && size > minSize) {
+            removeWeakestLearner();
+        }
+        else if(size < maxSize 
+                && throughput * size / (size + 1) >= target * (1.0 + this.addMarginOption.getValue())) {
+            this.ensemble = Arrays.copyOf(this.ensemble, size + 1);
+            this.ensemble[size] = newBaseLearner();
+        }
+        this.adaptiveTimeNanos = 0;
+        this.adaptiveInstances = 0;
+    }
+
+    /**
+     * Removes the tree with the lowest accuracy among the trees evaluated on 
+     * at least the removal grace period since they were created or reset, so 
+     * that new trees are not removed for their accuracy on a few instances. 
+     * No tree is removed if all of them are in their grace period. 
+     */
+    protected void removeWeakestLearner() {
+        int weakest = -1;
+        double weakestAcc = Double.MAX_VALUE;
+        double gracePeriod = Math.max(this.removalGracePeriodOption.getValue(), Double.MIN_VALUE);
+        for(int i = 0 ; i < this.ensemble.length ; ++i) {
+            if(this.ensemble[i].evaluator.getTotalWeightObserved() >= gracePeriod) {
+                double acc = this.ensemble[i].evaluator.getFractionCorrectlyClassified();
+                if(acc < weakestAcc) {
+                    weakestAcc = acc;
+                    weakest = i;
+                }
+            }
+        }
+        if(weakest < 0)
+            return;
+        ARFBaseLearner[] newEnsemble = new ARFBaseLearner[this.ensemble.length - 1];
+        System.arraycopy(this.ensemble, 0, newEnsemble, 0, weakest);
+        System.arraycopy(this.ensemble, weakest + 1, newEnsemble, weakest, newEnsemble.length - weakest);
+        this.ensemble = newEnsemble;
+    }
+
     @Override
     public boolean isRandomizable() {
         return true;
@@ -225,18 +452,29 @@ public class CS_AdaptiveRandomForest extends AbstractClassifier implements Multi
 
     @Override
     protected Measurement[] getModelMeasurementsImpl() {
-        return null;
+        List<Measurement> measurements = new ArrayList<Measurement>();
+        if(this.anytimeVoteOption.isSet()) {
+            measurements.add(new Measurement("anytime vote mean trees queried", 
+                this.anytimePredictions > 0 ? (double) this.anytimeTreesQueried / this.anytimePredictions : 0.0));
+        }
+        if(isAdaptiveSize()) {
+            measurements.add(new Measurement("ensemble size", 
+                this.ensemble != null ? this.ensemble.length : 0));
+        }
+        return measurements.isEmpty() ? null : measurements.toArray(new Measurement[measurements.size()]);
     }
 
     protected void initEnsemble(Instance instance) {
         // Init the ensemble.
         int ensembleSize = this.ensembleSizeOption.getValue();
+        if(isAdaptiveSize()) {
+            // Start within the bounds of the adaptive ensemble size
+            ensembleSize = Math.max(ensembleSize, this.minEnsembleSizeOption.getValue());
+            ensembleSize = Math.min(ensembleSize, Math.max(this.minEnsembleSizeOption.getValue(), 
+                this.maxEnsembleSizeOption.getValue()));
+        }
         this.ensemble = new ARFBaseLearner[ensembleSize];
         
-        // TODO: this should be an option with default = BasicClassificationPerformanceEvaluator
-//        BasicClassificationPerformanceEvaluator classificationEvaluator = (BasicClassificationPerformanceEvaluator) getPreparedClassOption(this.evaluatorOption);
-        BasicClassificationPerformanceEvaluator classificationEvaluator = new BasicClassificationPerformanceEvaluator();
-        
         this.subspaceSize = this.mFeaturesPerTreeSizeOption.getValue();
   
         // The size of m depends on:
@@ -274,24 +512,42 @@ public class CS_AdaptiveRandomForest extends AbstractClassifier implements Multi
         if(this.subspaceSize > n)
             this.subspaceSize = n;
         
+        // All trees project to the same dimension, so they share one header
         CS_ARFHoeffdingTree treeLearner = (CS_ARFHoeffdingTree) getPreparedClassOption(this.treeLearnerOption);
-        treeLearner.resetLearning();
+        this.projectedHeader = CS_HoeffdingTree.newProjectedHeader(getCLICreationString(InstanceStream.class), 
+            treeLearner.dim.getValue(), instance.classAttribute());
         
         for(int i = 0 ; i < ensembleSize ; ++i) {
-            treeLearner.subspaceSizeOption.setValue(this.subspaceSize);
-            this.ensemble[i] = new ARFBaseLearner(
-                i, 
-                (CS_ARFHoeffdingTree) treeLearner.copy(), 
-                (BasicClassificationPerformanceEvaluator) classificationEvaluator.copy(), 
-                this.instancesSeen, 
-                ! this.disableBackgroundLearnerOption.isSet(),
-                ! this.disableDriftDetectionOption.isSet(), 
-                driftDetectionMethodOption,
-                warningDetectionMethodOption,
-                false);
+            this.ensemble[i] = newBaseLearner();
         }
     }
     
+    /**
+     * Creates a new (untrained) member of the forest. 
+     */
+    protected ARFBaseLearner newBaseLearner() {
+        // TODO: this should be an option with default = BasicClassificationPerformanceEvaluator
+//        BasicClassificationPerformanceEvaluator classificationEvaluator = (BasicClassificationPerformanceEvaluator) getPreparedClassOption(this.evaluatorOption);
+        BasicClassificationPerformanceEvaluator classificationEvaluator = new BasicClassificationPerformanceEvaluator();
+        
+        CS_ARFHoeffdingTree treeLearner = (CS_ARFHoeffdingTree) getPreparedClassOption(this.treeLearnerOption);
+        treeLearner.resetLearning();
+        treeLearner.subspaceSizeOption.setValue(this.subspaceSize);
+        CS_ARFHoeffdingTree tree = (CS_ARFHoeffdingTree) treeLearner.copy();
+        tree.setProjectedHeader(this.projectedHeader);
+        
+        return new ARFBaseLearner(
+            this.nextLearnerIndex++, 
+            tree, 
+            classificationEvaluator, 
+            this.instancesSeen, 
+            ! this.disableBackgroundLearnerOption.isSet(),
+            ! this.disableDriftDetectionOption.isSet(), 
+            driftDetectionMethodOption,
+            warningDetectionMethodOption,
+            false);
+    }
+    
     /**
      * Inner class that represents a single tree member of the forest. 
      * It contains some analysis information, such as the numberOfDriftsDetected, 
@@ -396,6 +652,8 @@ public class CS_AdaptiveRandomForest extends AbstractClassifier implements Multi
                         // Create a new bkgTree classifier
                         CS_ARFHoeffdingTree bkgClassifier = (CS_ARFHoeffdingTree) this.classifier.copy();
                         bkgClassifier.resetLearning();
+                        // copy() duplicates the header, share the forest one instead
+                        bkgClassifier.setProjectedHeader(projectedHeader);
                         
                         // Resets the evaluator
                         BasicClassificationPerformanceEvaluator bkgEvaluator = (BasicClassificationPerformanceEvaluator) this.evaluator.copy();
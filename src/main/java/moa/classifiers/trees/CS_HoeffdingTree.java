@@ -500,9 +500,9 @@ public class CS_HoeffdingTree extends AbstractClassifier implements MultiClassCl
     
     
  
+    // Header of the projected instances, possibly shared with other trees (see setProjectedHeader)
     protected InstancesHeader streamHeader=null;
     protected   double[][] GaussMatrix ;
-    protected FastVector attributes;
     Scanner input ;
 
     public int calcByteSize() {
@@ -538,13 +538,12 @@ public class CS_HoeffdingTree extends AbstractClassifier implements MultiClassCl
 
     @Override
     public void trainOnInstanceImpl(Instance inst) {
-        if(this.streamHeader==null){
+        if(this.GaussMatrix==null){
             initialize(inst);
             
         }		
  
 	inst = transformedInstance(inst, GaussianProjection(inst,this.dim.getValue(), this.GaussMatrix));
-	inst.setDataset(this.streamHeader);
         if (this.treeRoot == null) {
             this.treeRoot = newLearningNode();
             this.activeLeafNodeCount = 1;
@@ -582,13 +581,12 @@ public class CS_HoeffdingTree extends AbstractClassifier implements MultiClassCl
     @Override
     public double[] getVotesForInstance(Instance inst) {
         
-        if (this.streamHeader == null) {
-            //Create a new header
+        if (this.GaussMatrix == null) {
+            //Create the projection matrix (and the header, if not shared)
                 initialize(inst); 
         }
         inst = transformedInstance(inst, 
         GaussianProjection(inst,this.dim.getValue(), this.GaussMatrix));
-        inst.setDataset(this.streamHeader);
         if (this.treeRoot != null) {
             FoundNode foundNode = this.treeRoot.filterInstanceToLeaf(inst,
                     null, -1);
@@ -1013,7 +1011,6 @@ public class CS_HoeffdingTree extends AbstractClassifier implements MultiClassCl
          private void initialize(Instance instance) {
               //System.out.println("Initilalize");
              Random r = new Random(System.currentTimeMillis()); 
-        this.streamHeader = null;
         this.GaussMatrix = new double[this.dim.getValue()][instance.numAttributes()-1] ;
         for(int i = 0 ; i < this.dim.getValue() ; i++){
             for(int j = 0; j < instance.numAttributes()-1 ; j++){
@@ -1022,22 +1019,44 @@ public class CS_HoeffdingTree extends AbstractClassifier implements MultiClassCl
  
         }
             
- // initialize instance space
-		Instances ds = new Instances();
-		 
-                if (this.streamHeader == null) { 
+ // initialize instance space, unless a header of the right size was injected
+                if (this.streamHeader == null 
+                        || this.streamHeader.numAttributes() - 1 != this.dim.getValue()) { 
             //Create a new header
-            this.attributes = new FastVector();
-            for (int i = 0; i < this.dim.getValue(); i++) {
-                this.attributes.addElement(new Attribute("numeric" + (i + 1)));
-            } 
-            this.attributes.addElement(instance.classAttribute());
-            this.streamHeader = new InstancesHeader(new Instances(
-                    getCLICreationString(InstanceStream.class), this.attributes, 0));
-            this.streamHeader.setClassIndex(this.streamHeader.numAttributes() - 1);
-              
+            this.streamHeader = newProjectedHeader(getCLICreationString(InstanceStream.class),
+                    this.dim.getValue(), instance.classAttribute());
         }
 	}
+
+    /**
+     * Creates the header of the projected space: dim numeric attributes 
+     * followed by the class attribute. 
+     */
+    public static InstancesHeader newProjectedHeader(String relationName, int dim, 
+            Attribute classAttribute) {
+        FastVector attributes = new FastVector();
+        for (int i = 0; i < dim; i++) {
+            attributes.addElement(new Attribute("numeric" + (i + 1)));
+        }
+        attributes.addElement(classAttribute);
+        InstancesHeader header = new InstancesHeader(new Instances(relationName, attributes, 0));
+        header.setClassIndex(header.numAttributes() - 1);
+        return header;
+    }
+
+    /**
+     * Sets the header of the projected instances, so that an ensemble can 
+     * share a single header among its trees instead of each tree building 
+     * its own. The header must not be modified afterwards. The projection 
+     * matrix remains specific to each tree. 
+     */
+    public void setProjectedHeader(InstancesHeader header) {
+        this.streamHeader = header;
+    }
+
+    public InstancesHeader getProjectedHeader() {
+        return this.streamHeader;
+    }
          
 //         @Override
 //	public void setModelContext(InstancesHeader context) {  
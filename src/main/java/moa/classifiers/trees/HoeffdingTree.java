@@ -41,6 +41,7 @@ import moa.classifiers.core.attributeclassobservers.NumericAttributeClassObserve
 import moa.classifiers.core.conditionaltests.InstanceConditionalTest;
 import moa.classifiers.core.splitcriteria.SplitCriterion;
 import moa.core.AutoExpandVector;
+import moa.core.ByteSizeEstimator;
 import moa.core.DoubleVector;
 import moa.core.Measurement;
 import moa.core.SizeOf;
@@ -93,7 +94,7 @@ import com.yahoo.labs.samoa.instances.Instance;
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
-public class HoeffdingTree extends AbstractClassifier implements MultiClassClassifier {
+public class HoeffdingTree extends AbstractClassifier implements MultiClassClassifier, ByteSizeEstimator {
 
     private static final long serialVersionUID = 1L;
 
@@ -493,6 +494,21 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         return calcByteSize();
     }
 
+    /**
+     * Estimates the size of the tree from the number of leaves, with the
+     * sizes of the leaves and the overhead of the last memory estimate (see
+     * memoryEstimatePeriod).
+     */
+    @Override
+    public long estimateByteSize() {
+        if (this.activeLeafByteSizeEstimate == 0.0 && this.inactiveLeafByteSizeEstimate == 0.0) {
+            return -1;
+        }
+        return (long) ((this.activeLeafNodeCount * this.activeLeafByteSizeEstimate
+                + this.inactiveLeafNodeCount * this.inactiveLeafByteSizeEstimate)
+                * this.byteSizeEstimateOverheadFraction);
+    }
+
     @Override
     public void resetLearningImpl() {
         this.treeRoot = null;
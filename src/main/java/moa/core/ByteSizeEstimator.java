@@ -0,0 +1,34 @@
+/*
+ *    ByteSizeEstimator.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+/**
+ * Interface implemented by the models that keep an estimate of their size,
+ * much cheaper to get than measuring it with {@link SizeOf}.
+ *
+ * @version $Revision: 1 $
+ */
+public interface ByteSizeEstimator {
+
+    /**
+     * Gets the estimated size of the model in bytes.
+     *
+     * @return the estimated size, -1 if there is no estimate yet
+     */
+    public long estimateByteSize();
+}
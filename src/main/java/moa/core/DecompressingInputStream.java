@@ -0,0 +1,220 @@
+/*
+ *    DecompressingInputStream.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Input stream that decompresses its input in a separate thread.
+ *
+ * <p>The thread reads blocks of decompressed data ahead into a bounded queue,
+ * so that decompression overlaps with the parsing done by the reader.
+ * {@link #open(InputStream, String)} chooses the decompressor from the file
+ * name: .gz (gzip), .zip (first file of the archive) and .zst (zstd, which
+ * needs com.github.luben:zstd-jni on the classpath). Other files are read
+ * as is.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class DecompressingInputStream extends InputStream {
+
+    protected static final int BLOCK_SIZE = 1 << 16;
+
+    protected static final int QUEUE_SIZE = 16;
+
+    protected static final String ZSTD_INPUT_STREAM = "com.github.luben.zstd.ZstdInputStream";
+
+    // Marks the end of the input in the queue
+    private static final byte[] END_OF_INPUT = new byte[0];
+
+    protected final InputStream decompressed;
+
+    protected final BlockingQueue<byte[]> blocks = new ArrayBlockingQueue<byte[]>(QUEUE_SIZE);
+
+    protected final Thread thread;
+
+    protected volatile IOException error;
+
+    protected volatile boolean closed;
+
+    protected byte[] block;
+
+    protected int blockPosition;
+
+    protected int blockLength;
+
+    /**
+     * Returns a stream decompressing the input in a separate thread if the file
+     * name is the one of a compressed file, or the input itself otherwise.
+     */
+    public static InputStream open(InputStream in, String fileName) throws IOException {
+        String name = fileName.toLowerCase();
+        if (name.endsWith(".gz")) {
+            return new DecompressingInputStream(new GZIPInputStream(in, BLOCK_SIZE), fileName);
+        } else if (name.endsWith(".zip")) {
+            ZipInputStream zip = new ZipInputStream(in);
+            ZipEntry entry = zip.getNextEntry();
+            while (entry != null && entry.isDirectory()) {
+                entry = zip.getNextEntry();
+            }
+            if (entry == null) {
+                zip.close();
+                throw new IOException("No file found in the archive " + fileName);
+            }
+            return new DecompressingInputStream(zip, fileName);
+        } else if (name.endsWith(".zst")) {
+            return new DecompressingInputStream(newZstdInputStream(in), fileName);
+        }
+        return in;
+    }
+
+    protected static InputStream newZstdInputStream(InputStream in) throws IOException {
+        try {
+            return (InputStream) Class.forName(ZSTD_INPUT_STREAM)
+                    .getConstructor(InputStream.class).newInstance(in);
+        } catch (ClassNotFoundException cnfe) {
+            throw new IOException("Reading .zst files requires " + ZSTD_INPUT_STREAM
+                    + " (com.github.luben:zstd-jni) on the classpath.", cnfe);
+        } catch (ReflectiveOperationException roe) {
+            throw new IOException("Failed to open the zstd stream.", roe);
+        }
+    }
+
+    public DecompressingInputStream(InputStream decompressed, String name) {
+        this.decompressed = decompressed;
+        this.thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                decompress();
+            }
+        }, "Decompression of " + name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // Runs in the decompression thread
+    protected void decompress() {
+        try {
+            while (true) {
+                byte[] buffer = new byte[BLOCK_SIZE];
+                int length = 0;
+                int read = 0;
+                while (length < BLOCK_SIZE
+                        && (read = this.decompressed.read(buffer, length, BLOCK_SIZE - length)) >= 0) {
+                    length += read;
+                }
+                if (length > 0 && !enqueue(length == BLOCK_SIZE ? buffer : Arrays.copyOf(buffer, length))) {
+                    return;
+                }
+                if (read < 0) {
+                    break;
+                }
+            }
+        } catch (IOException ioe) {
+            this.error = ioe;
+        } finally {
+            // closed here, not in close(), as the decompressor is not thread safe
+            try {
+                this.decompressed.close();
+            } catch (IOException ioe) {
+                // nothing more to read
+            }
+        }
+        enqueue(END_OF_INPUT);
+    }
+
+    // Waits for room in the queue, returns false if the stream was closed meanwhile
+    private boolean enqueue(byte[] buffer) {
+        try {
+            while (!this.closed) {
+                if (this.blocks.offer(buffer, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException ie) {
+            // closed
+        }
+        return false;
+    }
+
+    // Makes the next block current, returns false at the end of the input
+    protected boolean nextBlock() throws IOException {
+        if (this.block == END_OF_INPUT) {
+            return false;
+        }
+        try {
+            this.block = this.blocks.take();
+        } catch (InterruptedException ie) {
+            throw new InterruptedIOException("Interrupted while waiting for decompressed data.");
+        }
+        this.blockPosition = 0;
+        this.blockLength = this.block.length;
+        if (this.block == END_OF_INPUT) {
+            if (this.error != null) {
+                throw this.error;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (this.blockPosition == this.blockLength && !nextBlock()) {
+            return -1;
+        }
+        return this.block[this.blockPosition++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (this.blockPosition == this.blockLength && !nextBlock()) {
+            return -1;
+        }
+        int n = Math.min(len, this.blockLength - this.blockPosition);
+        System.arraycopy(this.block, this.blockPosition, b, off, n);
+        this.blockPosition += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return this.blockLength - this.blockPosition;
+    }
+
+    @Override
+    public void close() {
+        if (!this.closed) {
+            this.closed = true;
+            this.thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ *    DelayedExampleQueue.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+
+/**
+ * Queue of the examples waiting for their labels, each released at a given
+ * step, with a fixed capacity allocated once.
+ *
+ * <p>With in-order release steps (a fixed delay), the queue is a ring
+ * buffer. Otherwise the examples are in a binary heap ordered by release
+ * step, then by insertion, so that examples released at the same step come
+ * out in the order they came in.</p>
+ *
+ * <p>In compact mode only the values and the weight of the instances are
+ * stored, in arrays of doubles, and a new dense instance is built when an
+ * example is released, so the waiting examples are not objects the garbage
+ * collector has to trace and promote. Suits dense streams.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class DelayedExampleQueue {
+
+    protected final int capacity;
+
+    protected final boolean ordered;
+
+    // Examples of the slots, null in compact mode
+    protected final Example[] examples;
+
+    // Dataset of the instances built in compact mode, null otherwise
+    protected final Instances dataset;
+
+    protected final int numValues;
+
+    protected final double[] values;
+
+    protected final double[] weights;
+
+    protected final long[] releaseSteps;
+
+    protected int size;
+
+    // Slot of the first example of the ring buffer
+    protected int head;
+
+    // Heap of slots, insertion order of the slots and free slots, when not ordered
+    protected final int[] heap;
+
+    protected final long[] sequences;
+
+    protected final int[] freeSlots;
+
+    protected long nextSequence;
+
+    /**
+     * Creates a queue.
+     *
+     * @param capacity the maximum number of examples in the queue
+     * @param ordered whether the examples are added in order of release step
+     * @param dataset the dataset of the instances to store compactly, null to
+     * store the examples
+     */
+    public DelayedExampleQueue(int capacity, boolean ordered, Instances dataset) {
+        this.capacity = capacity;
+        this.ordered = ordered;
+        this.dataset = dataset;
+        if (dataset == null) {
+            this.examples = new Example[capacity];
+            this.numValues = 0;
+            this.values = null;
+            this.weights = null;
+        } else {
+            this.examples = null;
+            this.numValues = dataset.numAttributes();
+            this.values = new double[capacity * this.numValues];
+            this.weights = new double[capacity];
+        }
+        this.releaseSteps = new long[capacity];
+        if (ordered) {
+            this.heap = null;
+            this.sequences = null;
+            this.freeSlots = null;
+        } else {
+            this.heap = new int[capacity];
+            this.sequences = new long[capacity];
+            this.freeSlots = new int[capacity];
+            for (int i = 0; i < capacity; i++) {
+                this.freeSlots[i] = capacity - 1 - i;
+            }
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Adds an example released at the given step.
+     *
+     * @throws IllegalStateException if the queue is full
+     */
+    public void add(Example<Instance> example, long releaseStep) {
+        if (this.size == this.capacity) {
+            throw new IllegalStateException("Delayed example queue full: " + this.capacity);
+        }
+        int slot;
+        if (this.ordered) {
+            slot = (this.head + this.size) % this.capacity;
+        } else {
+            slot = this.freeSlots[this.capacity - 1 - this.size];
+            this.sequences[slot] = this.nextSequence++;
+        }
+        if (this.examples != null) {
+            this.examples[slot] = example;
+        } else {
+            Instance instance = example.getData();
+            int offset = slot * this.numValues;
+            for (int i = 0; i < this.numValues; i++) {
+                this.values[offset + i] = instance.value(i);
+            }
+            this.weights[slot] = instance.weight();
+        }
+        this.releaseSteps[slot] = releaseStep;
+        if (!this.ordered) {
+            siftUp(this.size, slot);
+        }
+        this.size++;
+    }
+
+    protected int firstSlot() {
+        return this.ordered ? this.head : this.heap[0];
+    }
+
+    /** Gets whether the first example is released at or before the step. */
+    public boolean isReleased(long step) {
+        return this.size > 0 && this.releaseSteps[firstSlot()] <= step;
+    }
+
+    /** Removes the first example, the one released first. */
+    @SuppressWarnings("unchecked")
+    public Example<Instance> removeFirst() {
+        if (this.size == 0) {
+            throw new IllegalStateException("Delayed example queue empty.");
+        }
+        int slot = firstSlot();
+        this.size--;
+        if (this.ordered) {
+            this.head = (this.head + 1) % this.capacity;
+        } else {
+            this.freeSlots[this.capacity - 1 - this.size] = slot;
+            if (this.size > 0) {
+                siftDown(0, this.heap[this.size]);
+            }
+        }
+        if (this.examples != null) {
+            Example<Instance> example = this.examples[slot];
+            this.examples[slot] = null;
+            return example;
+        }
+        double[] instanceValues = new double[this.numValues];
+        System.arraycopy(this.values, slot * this.numValues, instanceValues, 0, this.numValues);
+        Instance instance = new DenseInstance(this.weights[slot], instanceValues);
+        instance.setDataset(this.dataset);
+        return new InstanceExample(instance);
+    }
+
+    // Whether slot a comes out before slot b
+    protected boolean before(int a, int b) {
+        return this.releaseSteps[a] < this.releaseSteps[b]
+                || (this.releaseSteps[a] == this.releaseSteps[b]
+                && this.sequences[a] < this.sequences[b]);
+    }
+
+    protected void siftUp(int index, int slot) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!before(slot, this.heap[parent])) {
+                break;
+            }
+            this.heap[index] = this.heap[parent];
+            index = parent;
+        }
+        this.heap[index] = slot;
+    }
+
+    protected void siftDown(int index, int slot) {
+        int half = this.size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < this.size && before(this.heap[child + 1], this.heap[child])) {
+                child++;
+            }
+            if (!before(this.heap[child], slot)) {
+                break;
+            }
+            this.heap[index] = this.heap[child];
+            index = child;
+        }
+        this.heap[index] = slot;
+    }
+}
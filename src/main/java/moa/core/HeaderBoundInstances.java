@@ -0,0 +1,71 @@
+/*
+ *    HeaderBoundInstances.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+
+/**
+ * Creates instances bound to a shared header.
+ *
+ * <p>Instance.setDataset copies the header, rebuilding its map of attribute
+ * indices, for every instance. Streams and filters producing many instances
+ * with the same header use these methods instead, so that all the instances
+ * share it. The header must not be modified while the instances are in
+ * use.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public final class HeaderBoundInstances {
+
+    private HeaderBoundInstances() {
+    }
+
+    public static Instance newDense(double weight, double[] values,
+            InstancesHeader header) {
+        return new BoundDenseInstance(weight, values, header);
+    }
+
+    public static Instance newSparse(double weight, double[] values, int[] indices,
+            int numAttributes, InstancesHeader header) {
+        return new BoundSparseInstance(weight, values, indices, numAttributes, header);
+    }
+
+    private static class BoundDenseInstance extends DenseInstance {
+
+        private static final long serialVersionUID = 1L;
+
+        public BoundDenseInstance(double weight, double[] values, InstancesHeader header) {
+            super(weight, values);
+            this.instanceHeader = header;
+        }
+    }
+
+    private static class BoundSparseInstance extends SparseInstance {
+
+        private static final long serialVersionUID = 1L;
+
+        public BoundSparseInstance(double weight, double[] values, int[] indices,
+                int numAttributes, InstancesHeader header) {
+            super(weight, values, indices, numAttributes);
+            this.instanceHeader = header;
+        }
+    }
+}
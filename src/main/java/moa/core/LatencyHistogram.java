@@ -0,0 +1,135 @@
+/*
+ *    LatencyHistogram.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.util.Arrays;
+import moa.AbstractMOAObject;
+
+/**
+ * Histogram of latencies in nanoseconds, with a fixed relative precision
+ * over the whole range of long values, in the manner of HdrHistogram.
+ *
+ * <p>Values below 256 have their own bucket; above, every power of two is
+ * split into 128 buckets, so a percentile is reported with an error below
+ * 1%. Recording a value is a few operations on an array of about 7000
+ * counts, without allocation.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class LatencyHistogram extends AbstractMOAObject {
+
+    private static final long serialVersionUID = 1L;
+
+    // Sub-buckets of every power of two: 2^SUB_BUCKET_BITS
+    protected static final int SUB_BUCKET_BITS = 7;
+
+    protected static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    protected static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    protected final long[] counts = new long[NUM_BUCKETS];
+
+    protected long totalCount;
+
+    protected long maxValue;
+
+    /** Records a value, negative values being recorded as 0. */
+    public void recordValue(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        this.counts[bucketIndex(value)]++;
+        this.totalCount++;
+        if (value > this.maxValue) {
+            this.maxValue = value;
+        }
+    }
+
+    protected static int bucketIndex(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    // Highest value counted in the bucket
+    protected static long highestValueOf(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    public long getTotalCount() {
+        return this.totalCount;
+    }
+
+    public long getMaxValue() {
+        return this.maxValue;
+    }
+
+    /**
+     * Returns the value below or at which the percentage of the values is,
+     * NaN if no value was recorded.
+     */
+    public double getValueAtPercentile(double percentile) {
+        if (this.totalCount == 0) {
+            return Double.NaN;
+        }
+        long countAtPercentile = Math.max(1, (long) Math.ceil(percentile / 100.0 * this.totalCount));
+        long count = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            count += this.counts[i];
+            if (count >= countAtPercentile) {
+                return Math.min(highestValueOf(i), this.maxValue);
+            }
+        }
+        return this.maxValue;
+    }
+
+    public void reset() {
+        Arrays.fill(this.counts, 0);
+        this.totalCount = 0;
+        this.maxValue = 0;
+    }
+
+    /**
+     * Returns the median, 99th and 99.9th percentiles and the maximum, named
+     * after the operation timed, e.g. "train latency p99 (ns)".
+     */
+    public Measurement[] getMeasurements(String operation) {
+        return new Measurement[]{
+            new Measurement(operation + " latency p50 (ns)", getValueAtPercentile(50.0)),
+            new Measurement(operation + " latency p99 (ns)", getValueAtPercentile(99.0)),
+            new Measurement(operation + " latency p999 (ns)", getValueAtPercentile(99.9)),
+            new Measurement(operation + " latency max (ns)",
+                    this.totalCount > 0 ? this.maxValue : Double.NaN)
+        };
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        sb.append("p50 ").append(getValueAtPercentile(50.0));
+        sb.append(", p99 ").append(getValueAtPercentile(99.0));
+        sb.append(", p999 ").append(getValueAtPercentile(99.9));
+        sb.append(", max ").append(this.maxValue);
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ *    AsyncPredictionSink.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prediction sink handing the predictions to another sink in a separate
+ * thread.
+ *
+ * <p>The predictions are stored in batches of primitive arrays, and the full
+ * batches are formatted and written to the wrapped sink by the writer
+ * thread, so that the evaluation only copies a few values per prediction. A
+ * failure of the writer, or its end before all the predictions are written,
+ * is reported by the next call.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class AsyncPredictionSink extends PredictionSink {
+
+    protected static final int BATCH_SIZE = 4096;
+
+    protected static final int QUEUE_SIZE = 8;
+
+    protected static final byte CLASS = 0;
+
+    protected static final byte VALUE = 1;
+
+    protected static final byte TEXT = 2;
+
+    // Marks the end of the predictions in the queue
+    private static final Batch END_OF_PREDICTIONS = new Batch();
+
+    // Marks a flush of the wrapped sink in the queue
+    private static final Batch FLUSH = new Batch();
+
+    protected final PredictionSink sink;
+
+    protected final BlockingQueue<Batch> batches = new ArrayBlockingQueue<Batch>(QUEUE_SIZE);
+
+    protected final Thread writer;
+
+    protected volatile Throwable error;
+
+    // Whether the writer wrote all the predictions and closed the sink
+    protected volatile boolean completed;
+
+    protected Batch batch = new Batch();
+
+    protected boolean closed;
+
+    protected long flushesRequested;
+
+    // Guarded by this
+    protected long flushesDone;
+
+    /** Predictions of a batch; the fields used depend on the kind of each. */
+    protected static class Batch {
+
+        protected int size;
+
+        protected final byte[] kinds = new byte[BATCH_SIZE];
+
+        protected final int[] predictedClasses = new int[BATCH_SIZE];
+
+        protected final double[] predictions = new double[BATCH_SIZE];
+
+        protected final double[] actuals = new double[BATCH_SIZE];
+
+        protected final String[] texts = new String[BATCH_SIZE];
+    }
+
+    public AsyncPredictionSink(PredictionSink sink) {
+        this.sink = sink;
+        this.writer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                write();
+            }
+        }, "Prediction writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // Runs in the writer thread
+    protected void write() {
+        try {
+            while (true) {
+                Batch full = this.batches.take();
+                if (full == END_OF_PREDICTIONS) {
+                    break;
+                } else if (full == FLUSH) {
+                    this.sink.flush();
+                    synchronized (this) {
+                        this.flushesDone++;
+                        notifyAll();
+                    }
+                    continue;
+                }
+                for (int i = 0; i < full.size; i++) {
+                    switch (full.kinds[i]) {
+                        case CLASS:
+                            this.sink.writeClass(full.predictedClasses[i], full.predictions[i], full.actuals[i]);
+                            break;
+                        case VALUE:
+                            this.sink.writeValue(full.predictions[i], full.actuals[i]);
+                            break;
+                        default:
+                            this.sink.writeText(full.texts[i], full.actuals[i]);
+                    }
+                }
+            }
+            this.sink.close();
+            this.completed = true;
+        } catch (InterruptedException ie) {
+            this.error = new RuntimeException("Interrupted while writing predictions.", ie);
+        } catch (Throwable e) {
+            this.error = e;
+        }
+    }
+
+    @Override
+    public void writeClass(int predictedClass, double score, double trueClass) {
+        int i = this.batch.size;
+        this.batch.kinds[i] = CLASS;
+        this.batch.predictedClasses[i] = predictedClass;
+        this.batch.predictions[i] = score;
+        this.batch.actuals[i] = trueClass;
+        added();
+    }
+
+    @Override
+    public void writeValue(double predicted, double actual) {
+        int i = this.batch.size;
+        this.batch.kinds[i] = VALUE;
+        this.batch.predictions[i] = predicted;
+        this.batch.actuals[i] = actual;
+        added();
+    }
+
+    @Override
+    public void writeText(String predicted, double actual) {
+        int i = this.batch.size;
+        this.batch.kinds[i] = TEXT;
+        this.batch.texts[i] = predicted;
+        this.batch.actuals[i] = actual;
+        added();
+    }
+
+    private void added() {
+        if (++this.batch.size == BATCH_SIZE) {
+            enqueue(this.batch);
+            this.batch = new Batch();
+        }
+    }
+
+    // Waits for room in the queue, fails if the writer failed
+    private void enqueue(Batch full) {
+        try {
+            while (!this.batches.offer(full, 100, TimeUnit.MILLISECONDS)) {
+                if (!this.writer.isAlive()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException ie) {
+            throw new RuntimeException("Interrupted while writing predictions.", ie);
+        }
+        checkWriter();
+    }
+
+    // Fails if the writer failed, or ended without writing all the predictions
+    private void checkWriter() {
+        if (this.error != null || (!this.writer.isAlive() && !this.completed)) {
+            if (this.error instanceof RuntimeException) {
+                throw (RuntimeException) this.error;
+            }
+            throw new RuntimeException("Prediction writer failed.", this.error);
+        }
+    }
+
+    /**
+     * Waits until the predictions so far are written and the wrapped sink is
+     * flushed.
+     */
+    @Override
+    public void flush() {
+        if (this.batch.size > 0) {
+            enqueue(this.batch);
+            this.batch = new Batch();
+        }
+        enqueue(FLUSH);
+        long flush = ++this.flushesRequested;
+        try {
+            synchronized (this) {
+                while (this.flushesDone < flush && this.writer.isAlive()) {
+                    wait(100);
+                }
+            }
+        } catch (InterruptedException ie) {
+            throw new RuntimeException("Interrupted while writing predictions.", ie);
+        }
+        checkWriter();
+    }
+
+    /**
+     * Writes the remaining predictions and waits until the wrapped sink is
+     * closed.
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        if (this.batch.size > 0) {
+            enqueue(this.batch);
+        }
+        enqueue(END_OF_PREDICTIONS);
+        try {
+            this.writer.join();
+        } catch (InterruptedException ie) {
+            throw new RuntimeException("Interrupted while writing predictions.", ie);
+        }
+        checkWriter();
+    }
+}
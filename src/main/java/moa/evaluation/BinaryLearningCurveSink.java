@@ -0,0 +1,89 @@
+/*
+ *    BinaryLearningCurveSink.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Learning curve sink writing binary records, in little-endian order:
+ * <ul>
+ * <li>names of the measurements, written before the first entry and again
+ * when new measurements appear: the opposite of the number of names (int32),
+ * then the length (int32) and the UTF-8 bytes of every name</li>
+ * <li>entries: the number of values (int32), then the values (float64, NaN
+ * if missing), in the order of the last names</li>
+ * </ul>
+ *
+ * @version $Revision: 1 $
+ */
+public class BinaryLearningCurveSink extends LearningCurveSink {
+
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    protected int numNamesWritten;
+
+    public BinaryLearningCurveSink(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void writeLastEntry(LearningCurve learningCurve) {
+        int numMeasurements = learningCurve.numMeasurements();
+        if (numMeasurements != this.numNamesWritten) {
+            byte[][] names = new byte[numMeasurements][];
+            int size = 4;
+            for (int i = 0; i < numMeasurements; i++) {
+                names[i] = learningCurve.getMeasurementName(i).getBytes(StandardCharsets.UTF_8);
+                size += 4 + names[i].length;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(size).order(BYTE_ORDER);
+            buffer.putInt(-numMeasurements);
+            for (byte[] name : names) {
+                buffer.putInt(name.length);
+                buffer.put(name);
+            }
+            write(buffer);
+            this.numNamesWritten = numMeasurements;
+        }
+        int entry = learningCurve.numEntries() - 1;
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 8 * numMeasurements).order(BYTE_ORDER);
+        buffer.putInt(numMeasurements);
+        for (int i = 0; i < numMeasurements; i++) {
+            buffer.putDouble(learningCurve.getMeasurement(entry, i));
+        }
+        write(buffer);
+        flush();
+    }
+
+    @Override
+    public void resume(LearningCurve learningCurve) {
+        this.numNamesWritten = learningCurve.numMeasurements();
+    }
+
+    protected void write(ByteBuffer buffer) {
+        try {
+            this.out.write(buffer.array(), 0, buffer.position());
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed writing the learning curve.", ex);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *    BinaryPredictionSink.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Prediction sink writing fixed size binary rows, in little-endian order:
+ * <ul>
+ * <li>class predictions: the predicted class (int32), its score (float32)
+ * and the true class (int32, -1 if missing), e.g. a numpy dtype of
+ * <code>[('predicted', '&lt;i4'), ('score', '&lt;f4'), ('true', '&lt;i4')]</code></li>
+ * <li>numeric predictions: the prediction and the true value (float64)</li>
+ * <li>text predictions: the length of the UTF-8 text (int32), the text and
+ * the true value (float64)</li>
+ * </ul>
+ *
+ * @version $Revision: 1 $
+ */
+public class BinaryPredictionSink extends PredictionSink {
+
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    // Bytes of the record of a class prediction
+    public static final int CLASS_RECORD_SIZE = 4 + 4 + 4;
+
+    protected final OutputStream out;
+
+    protected ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(BYTE_ORDER);
+
+    public BinaryPredictionSink(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void writeClass(int predictedClass, double score, double trueClass) {
+        reserve(CLASS_RECORD_SIZE);
+        this.buffer.putInt(predictedClass);
+        this.buffer.putFloat((float) score);
+        this.buffer.putInt(Double.isNaN(trueClass) ? -1 : (int) trueClass);
+    }
+
+    @Override
+    public void writeValue(double predicted, double actual) {
+        reserve(8 + 8);
+        this.buffer.putDouble(predicted);
+        this.buffer.putDouble(actual);
+    }
+
+    @Override
+    public void writeText(String predicted, double actual) {
+        byte[] text = predicted.getBytes(StandardCharsets.UTF_8);
+        reserve(4 + text.length + 8);
+        this.buffer.putInt(text.length);
+        this.buffer.put(text);
+        this.buffer.putDouble(actual);
+    }
+
+    // Makes room for a row, flushing the buffer or growing it for large rows
+    protected void reserve(int size) {
+        if (this.buffer.remaining() < size) {
+            flushBuffer();
+            if (this.buffer.capacity() < size) {
+                this.buffer = ByteBuffer.allocate(size).order(BYTE_ORDER);
+            }
+        }
+    }
+
+    protected void flushBuffer() {
+        try {
+            this.out.write(this.buffer.array(), 0, this.buffer.position());
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed writing predictions.", ex);
+        }
+        this.buffer.clear();
+    }
+
+    @Override
+    public void flush() {
+        flushBuffer();
+        try {
+            this.out.flush();
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed writing predictions.", ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        flushBuffer();
+        try {
+            this.out.close();
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed writing predictions.", ex);
+        }
+    }
+}
@@ -20,6 +20,7 @@
 package moa.evaluation;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import moa.AbstractMOAObject;
@@ -41,10 +42,53 @@ public class LearningCurve extends AbstractMOAObject {
 
     protected List<double[]> measurementValues = new ArrayList<double[]>();
 
+    // Number of last entries kept, 0 to keep all of them
+    protected int maxEntries;
+
+    // Index in measurementValues of the first entry: once maxEntries are
+    // kept, the list is a ring buffer whose oldest entry is overwritten
+    protected int firstEntry;
+
     public LearningCurve(String orderingMeasurementName) {
         this.measurementNames.add(orderingMeasurementName);
     }
 
+    /**
+     * Keeps only the last entries in memory, for curves whose entries are
+     * written to a {@link LearningCurveSink} as they are inserted.
+     *
+     * @param maxEntries the number of entries kept, 0 to keep all of them
+     */
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+        removeOldestEntries();
+    }
+
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    protected void removeOldestEntries() {
+        if (this.maxEntries > 0 && this.measurementValues.size() > this.maxEntries) {
+            unwrapEntries();
+            this.measurementValues.subList(0, this.measurementValues.size() - this.maxEntries).clear();
+        }
+    }
+
+    // Moves the first entry back to index 0 of the list
+    protected void unwrapEntries() {
+        if (this.firstEntry > 0) {
+            Collections.rotate(this.measurementValues, -this.firstEntry);
+            this.firstEntry = 0;
+        }
+    }
+
+    protected double[] entry(int entryIndex) {
+        int index = this.firstEntry + entryIndex;
+        int size = this.measurementValues.size();
+        return this.measurementValues.get(index < size ? index : index - size);
+    }
+
     public String getOrderingMeasurementName() {
         return this.measurementNames.get(0);
     }
@@ -62,12 +106,26 @@ public class LearningCurve extends AbstractMOAObject {
                     measurement.getValue());
         }
         double orderVal = orderMeasurement.getValue();
-        int index = 0;
-        while ((index < this.measurementValues.size())
-                && (orderVal > this.measurementValues.get(index)[0])) {
-            index++;
+        // entries are usually inserted last
+        int size = this.measurementValues.size();
+        int index = size;
+        while ((index > 0) && (orderVal <= entry(index - 1)[0])) {
+            index--;
         }
+        if (this.maxEntries > 0 && size >= this.maxEntries) {
+            if (index == 0) {
+                // older than all the entries kept
+                return;
+            }
+            if (index == size && size == this.maxEntries) {
+                this.measurementValues.set(this.firstEntry, entryVals.getArrayRef());
+                this.firstEntry = (this.firstEntry + 1) % size;
+                return;
+            }
+        }
+        unwrapEntries();
         this.measurementValues.add(index, entryVals.getArrayRef());
+        removeOldestEntries();
     }
 
     public int numEntries() {
@@ -99,7 +157,7 @@ public class LearningCurve extends AbstractMOAObject {
 
     public String entryToString(int entryIndex) {
         StringBuilder sb = new StringBuilder();
-        double[] vals = this.measurementValues.get(entryIndex);
+        double[] vals = entry(entryIndex);
         for (int i = 0; i < this.measurementNames.size(); i++) {
             if (i > 0) {
                 sb.append(',');
@@ -122,7 +180,13 @@ public class LearningCurve extends AbstractMOAObject {
     }
 
     public double getMeasurement(int entryIndex, int measurementIndex) {
-        return this.measurementValues.get(entryIndex)[measurementIndex];
+        double[] vals = entry(entryIndex);
+        // measurements added after the entry are missing
+        return measurementIndex < vals.length ? vals[measurementIndex] : Double.NaN;
+    }
+
+    public int numMeasurements() {
+        return this.measurementNames.size();
     }
 
     public String getMeasurementName(int measurementIndex) {
@@ -0,0 +1,91 @@
+/*
+ *    LearningCurveSink.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Destination of the entries of a learning curve, written as they are
+ * inserted, so that the whole curve does not need to be kept in memory (see
+ * {@link LearningCurve#setMaxEntries(int)}).
+ *
+ * <p>{@link #open(File)} is used by the tasks for their dump file: files
+ * ending with .bin get binary records ({@link BinaryLearningCurveSink}), the
+ * others the usual csv lines ({@link TextLearningCurveSink}). Existing files
+ * are appended to. Every entry is flushed, so the file can be followed while
+ * the task runs.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public abstract class LearningCurveSink implements Closeable {
+
+    protected static final int BUFFER_SIZE = 1 << 16;
+
+    protected final OutputStream out;
+
+    public LearningCurveSink(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Opens a sink appending to the file, binary if the name of the file ends
+     * with .bin and csv otherwise.
+     */
+    public static LearningCurveSink open(File file) {
+        OutputStream out;
+        try {
+            out = new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_SIZE);
+        } catch (IOException ex) {
+            throw new RuntimeException(
+                    "Unable to open immediate result file: " + file, ex);
+        }
+        return file.getName().toLowerCase().endsWith(".bin")
+                ? new BinaryLearningCurveSink(out) : new TextLearningCurveSink(out);
+    }
+
+    /** Writes the last entry of the curve. */
+    public abstract void writeLastEntry(LearningCurve learningCurve);
+
+    /**
+     * Continues a curve whose entries are already in the file, when an
+     * evaluation is resumed.
+     */
+    public abstract void resume(LearningCurve learningCurve);
+
+    protected void flush() {
+        try {
+            this.out.flush();
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed writing the learning curve.", ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.out.close();
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed writing the learning curve.", ex);
+        }
+    }
+}
@@ -47,12 +47,17 @@ public class LearningEvaluation extends AbstractMOAObject {
 
     public LearningEvaluation(Measurement[] evaluationMeasurements,
             LearningPerformanceEvaluator cpe, Learner model) {
+        this(evaluationMeasurements, cpe, model.getModelMeasurements());
+    }
+
+    public LearningEvaluation(Measurement[] evaluationMeasurements,
+            LearningPerformanceEvaluator cpe, Measurement[] modelMeasurements) {
         List<Measurement> measurementList = new LinkedList<Measurement>();
         if (evaluationMeasurements != null){
         measurementList.addAll(Arrays.asList(evaluationMeasurements));
         }
         measurementList.addAll(Arrays.asList(cpe.getPerformanceMeasurements()));
-        measurementList.addAll(Arrays.asList(model.getModelMeasurements()));
+        measurementList.addAll(Arrays.asList(modelMeasurements));
         this.measurements = measurementList.toArray(new Measurement[measurementList.size()]);
     }
 
@@ -0,0 +1,192 @@
+/*
+ *    ModelCostMeter.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import moa.AbstractMOAObject;
+import moa.classifiers.AbstractClassifier;
+import moa.core.ByteSizeEstimator;
+import moa.core.Measurement;
+import moa.core.TimingUtils;
+import moa.learners.Learner;
+
+/**
+ * Takes the measurements of a learner at the samples of an evaluation and
+ * computes its cost in RAM-Hours, without measuring the size of the learner
+ * at every sample, since measuring it walks the whole model.
+ *
+ * <p>The size is measured at the first and last samples, and at every
+ * measurement frequency-th sample if the time spent measuring stays within
+ * the budget. It is measured once per sample, for the model measurements
+ * and for the RAM-Hours. Between two measurements, the size is interpolated
+ * linearly at each sample for the RAM-Hours, which are the same as measuring
+ * at every sample if the size grows linearly. The samples before the next
+ * measurement get the RAM-Hours of the last measured size, and a missing
+ * model serialized size. Learners that estimate their size
+ * ({@link ByteSizeEstimator}) can be asked for their estimate instead, which
+ * is then reported as the model serialized size.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class ModelCostMeter extends AbstractMOAObject {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final String BYTE_SIZE_MEASUREMENT = "model serialized size (bytes)";
+
+    protected static final double BYTES_PER_GB = 1024.0 * 1024.0 * 1024.0;
+
+    protected final int measurementFrequency;
+
+    protected final double timeBudget;
+
+    protected final boolean useEstimates;
+
+    protected long numSamples;
+
+    protected double lastSampleTime;
+
+    protected double RAMHours;
+
+    // RAM-Hours at the last measurement
+    protected double measuredRAMHours;
+
+    protected double lastMeasurementTime;
+
+    protected long lastByteSize = -1;
+
+    // Sum of the time increments since the last measurement, and of the
+    // increments times the time since the last measurement
+    protected double sumIncrements;
+
+    protected double sumWeightedIncrements;
+
+    protected double measurementSeconds;
+
+    /**
+     * Creates a meter.
+     *
+     * @param measurementFrequency the number of samples between measurements
+     * @param timeBudget the maximum fraction of the evaluation time spent
+     * measuring, 0 for no limit
+     * @param useEstimates whether to use the estimates of the learners that
+     * estimate their size
+     */
+    public ModelCostMeter(int measurementFrequency, double timeBudget,
+            boolean useEstimates) {
+        this.measurementFrequency = measurementFrequency;
+        this.timeBudget = timeBudget;
+        this.useEstimates = useEstimates;
+    }
+
+    /**
+     * Takes the measurements of the learner at a sample, measuring its size
+     * if due, and updates the RAM-Hours.
+     *
+     * @param learner the learner evaluated
+     * @param time the seconds of evaluation at the sample
+     * @param last whether it is the last sample
+     * @return the model measurements of the learner
+     */
+    public Measurement[] sample(Learner learner, double time, boolean last) {
+        this.numSamples++;
+        double increment = time - this.lastSampleTime;
+        this.lastSampleTime = time;
+        this.sumIncrements += increment;
+        this.sumWeightedIncrements += increment * (time - this.lastMeasurementTime);
+        long byteSize = -1;
+        if (this.useEstimates && learner instanceof ByteSizeEstimator) {
+            byteSize = ((ByteSizeEstimator) learner).estimateByteSize();
+        }
+        boolean measure = byteSize < 0 && isMeasurementDue(time, last);
+        Measurement[] modelMeasurements;
+        if (learner instanceof AbstractClassifier) {
+            long startTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+            modelMeasurements = ((AbstractClassifier) learner).getModelMeasurements(measure);
+            if (byteSize >= 0) {
+                // report the estimate as the size
+                for (int i = 0; i < modelMeasurements.length; i++) {
+                    if (modelMeasurements[i].getName().equals(BYTE_SIZE_MEASUREMENT)) {
+                        modelMeasurements[i] = new Measurement(BYTE_SIZE_MEASUREMENT, byteSize);
+                        break;
+                    }
+                }
+            } else if (measure) {
+                byteSize = (long) Measurement.getMeasurementNamed(
+                        BYTE_SIZE_MEASUREMENT, modelMeasurements).getValue();
+                this.measurementSeconds += TimingUtils.nanoTimeToSeconds(
+                        TimingUtils.getNanoCPUTimeOfCurrentThread() - startTime);
+            }
+        } else {
+            modelMeasurements = learner.getModelMeasurements();
+            if (measure) {
+                long startTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                byteSize = learner.measureByteSize();
+                this.measurementSeconds += TimingUtils.nanoTimeToSeconds(
+                        TimingUtils.getNanoCPUTimeOfCurrentThread() - startTime);
+            }
+        }
+        if (byteSize < 0) {
+            this.RAMHours = this.measuredRAMHours
+                    + this.lastByteSize / BYTES_PER_GB * (this.sumIncrements / 3600.0);
+            return modelMeasurements;
+        }
+        if (this.sumIncrements == increment) {
+            // measured at the previous sample too
+            double RAMHoursIncrement = byteSize / BYTES_PER_GB; //GBs
+            RAMHoursIncrement *= (increment / 3600.0); //Hours
+            this.measuredRAMHours += RAMHoursIncrement;
+        } else {
+            double startByteSize = this.lastByteSize < 0 ? byteSize : this.lastByteSize;
+            double elapsed = time - this.lastMeasurementTime;
+            double slope = elapsed > 0.0 ? (byteSize - startByteSize) / elapsed : 0.0;
+            this.measuredRAMHours += (startByteSize * this.sumIncrements
+                    + slope * this.sumWeightedIncrements) / BYTES_PER_GB / 3600.0;
+        }
+        this.RAMHours = this.measuredRAMHours;
+        this.lastByteSize = byteSize;
+        this.lastMeasurementTime = time;
+        this.sumIncrements = 0.0;
+        this.sumWeightedIncrements = 0.0;
+        return modelMeasurements;
+    }
+
+    protected boolean isMeasurementDue(double time, boolean last) {
+        if (this.lastByteSize < 0 || last) {
+            return true;
+        }
+        if (this.numSamples % this.measurementFrequency != 0) {
+            return false;
+        }
+        return this.timeBudget <= 0.0 || this.measurementSeconds <= this.timeBudget * time;
+    }
+
+    /** Gets the RAM-Hours at the last sample. */
+    public double getRAMHours() {
+        return this.RAMHours;
+    }
+
+    /** Gets the size of the learner at the last measurement, -1 if none. */
+    public long getLastByteSize() {
+        return this.lastByteSize;
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        sb.append("RAM-Hours ").append(this.RAMHours);
+    }
+}
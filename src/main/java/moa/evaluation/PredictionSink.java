@@ -0,0 +1,131 @@
+/*
+ *    PredictionSink.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import moa.core.Utils;
+
+/**
+ * Destination of the predictions written by the evaluation tasks.
+ *
+ * <p>{@link #open(File)} is used by the tasks for their prediction file:
+ * files ending with .bin get binary rows ({@link BinaryPredictionSink}), the
+ * others the usual text lines ({@link TextPredictionSink}), and the rows are
+ * written by a separate thread ({@link AsyncPredictionSink}). Existing files
+ * are appended to.</p>
+ *
+ * <p>The methods do not throw IOException: failures are reported as
+ * RuntimeException, possibly by a later call when writing asynchronously.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public abstract class PredictionSink implements Closeable {
+
+    protected static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Opens an asynchronous sink appending to the file, binary if the name of
+     * the file ends with .bin and text otherwise.
+     */
+    public static PredictionSink open(File file) {
+        OutputStream out;
+        try {
+            out = new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_SIZE);
+        } catch (IOException ex) {
+            throw new RuntimeException(
+                    "Unable to open prediction result file: " + file, ex);
+        }
+        PredictionSink sink = file.getName().toLowerCase().endsWith(".bin")
+                ? new BinaryPredictionSink(out) : new TextPredictionSink(out);
+        return new AsyncPredictionSink(sink);
+    }
+
+    /**
+     * Writes a class prediction.
+     *
+     * @param predictedClass the index of the predicted class
+     * @param score the share of the votes of the predicted class
+     * @param trueClass the index of the true class, NaN if missing
+     */
+    public abstract void writeClass(int predictedClass, double score, double trueClass);
+
+    /** Writes a numeric prediction and the true value. */
+    public abstract void writeValue(double predicted, double actual);
+
+    /** Writes a prediction described as text, such as a multi-target prediction, and the true value. */
+    public abstract void writeText(String predicted, double actual);
+
+    /** Writes the class with the most votes for the instance. */
+    public void writeVotes(double[] votes, Instance instance) {
+        int predictedClass = Utils.maxIndex(votes);
+        double sum = Utils.sum(votes);
+        double score = sum > 0.0 && predictedClass < votes.length ? votes[predictedClass] / sum : 0.0;
+        writeClass(predictedClass, score,
+                instance.classIsMissing() ? Double.NaN : (int) instance.classValue());
+    }
+
+    /** Writes the predictions buffered so far to the file. */
+    public abstract void flush();
+
+    @Override
+    public abstract void close();
+
+    /**
+     * Returns the offset in a file written by {@link #open(File)} after the
+     * given number of class predictions following an offset, so that the
+     * file can be truncated to them.
+     *
+     * @param file the prediction file
+     * @param start the offset of the first prediction
+     * @param numPredictions the number of predictions
+     * @return the offset after the predictions
+     */
+    public static long classPredictionsLength(File file, long start, long numPredictions) {
+        if (file.getName().toLowerCase().endsWith(".bin")) {
+            return start + numPredictions * BinaryPredictionSink.CLASS_RECORD_SIZE;
+        }
+        try (FileInputStream fileIn = new FileInputStream(file)) {
+            fileIn.getChannel().position(start);
+            InputStream in = new BufferedInputStream(fileIn, BUFFER_SIZE);
+            long offset = start;
+            long numLines = 0;
+            while (numLines < numPredictions) {
+                int b = in.read();
+                if (b < 0) {
+                    throw new RuntimeException("Missing predictions in: " + file);
+                }
+                offset++;
+                if (b == '\n') {
+                    numLines++;
+                }
+            }
+            return offset;
+        } catch (IOException ex) {
+            throw new RuntimeException("Unable to read prediction result file: " + file, ex);
+        }
+    }
+}
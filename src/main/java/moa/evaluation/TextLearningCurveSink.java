@@ -0,0 +1,64 @@
+/*
+ *    TextLearningCurveSink.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Learning curve sink writing csv lines: the names of the measurements
+ * before the first entry, then one line per entry, as written by
+ * {@link LearningCurve#headerToString()} and
+ * {@link LearningCurve#entryToString(int)}.
+ *
+ * @version $Revision: 1 $
+ */
+public class TextLearningCurveSink extends LearningCurveSink {
+
+    protected static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    protected boolean headerWritten;
+
+    public TextLearningCurveSink(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void writeLastEntry(LearningCurve learningCurve) {
+        if (!this.headerWritten) {
+            writeLine(learningCurve.headerToString());
+            this.headerWritten = true;
+        }
+        writeLine(learningCurve.entryToString(learningCurve.numEntries() - 1));
+        flush();
+    }
+
+    @Override
+    public void resume(LearningCurve learningCurve) {
+        this.headerWritten = true;
+    }
+
+    protected void writeLine(String line) {
+        try {
+            this.out.write((line + LINE_SEPARATOR).getBytes(Charset.defaultCharset()));
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed writing the learning curve.", ex);
+        }
+    }
+}
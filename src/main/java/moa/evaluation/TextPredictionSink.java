@@ -0,0 +1,97 @@
+/*
+ *    TextPredictionSink.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Prediction sink writing one line of text per prediction, the prediction
+ * and the true value separated by a comma (" ? " for a missing class), in a
+ * buffer flushed when full or closed.
+ *
+ * @version $Revision: 1 $
+ */
+public class TextPredictionSink extends PredictionSink {
+
+    protected static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    protected final Writer writer;
+
+    protected final StringBuilder line = new StringBuilder();
+
+    public TextPredictionSink(OutputStream out) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out), BUFFER_SIZE);
+    }
+
+    @Override
+    public void writeClass(int predictedClass, double score, double trueClass) {
+        this.line.setLength(0);
+        this.line.append(predictedClass).append(',');
+        if (Double.isNaN(trueClass)) {
+            this.line.append(" ? ");
+        } else {
+            this.line.append((int) trueClass);
+        }
+        writeLine();
+    }
+
+    @Override
+    public void writeValue(double predicted, double actual) {
+        this.line.setLength(0);
+        this.line.append(predicted).append(',').append(actual);
+        writeLine();
+    }
+
+    @Override
+    public void writeText(String predicted, double actual) {
+        this.line.setLength(0);
+        this.line.append(predicted).append(',').append(actual);
+        writeLine();
+    }
+
+    protected void writeLine() {
+        this.line.append(LINE_SEPARATOR);
+        try {
+            this.writer.append(this.line);
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed writing predictions.", ex);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            this.writer.flush();
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed writing predictions.", ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.writer.close();
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed writing predictions.", ex);
+        }
+    }
+}
@@ -20,7 +20,9 @@
 package moa.streams;
 
 import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
 import java.io.BufferedReader;
@@ -31,6 +33,7 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.ArrayList;
 
+import moa.core.DecompressingInputStream;
 import moa.core.InputStreamProgressMonitor;
 import moa.core.InstanceExample;
 import moa.core.ObjectRepository;
@@ -56,7 +59,7 @@ public class ArffFileStream extends AbstractOptionHandler implements
     private static final long serialVersionUID = 1L;
 
     public FileOption arffFileOption = new FileOption("arffFile", 'f',
-            "ARFF file to load.", null, "arff", false);
+            "ARFF file to load, possibly compressed (.gz, .zip or .zst).", null, "arff", false);
 
     public IntOption classIndexOption = new IntOption(
             "classIndex",
@@ -64,10 +67,15 @@ public class ArffFileStream extends AbstractOptionHandler implements
             "Class index of data. 0 for none or -1 for last attribute in file.",
             -1, -1, Integer.MAX_VALUE);
 
+    public FlagOption fastParserOption = new FlagOption("fastParser", 'p',
+            "Parse the data with the block-reading parser (numeric and nominal attributes only).");
+
     protected Instances instances;
 
     protected Reader fileReader;
 
+    protected FastArffReader fastReader;
+
     protected boolean hitEndOfFile;
 
     protected InstanceExample lastInstanceRead;
@@ -125,16 +133,22 @@ public class ArffFileStream extends AbstractOptionHandler implements
     @Override
     public void restart() {
         try {
-            if (this.fileReader != null) {
-                this.fileReader.close();
-            }
-            InputStream fileStream = new FileInputStream(this.arffFileOption.getFile());
-            this.fileProgressMonitor = new InputStreamProgressMonitor(
-                    fileStream);
-            this.fileReader = new BufferedReader(new InputStreamReader(
-                    this.fileProgressMonitor));
+            closeReaders();
             int classIndex = this.classIndexOption.getValue();
-            this.instances = new Instances(this.fileReader, 1, classIndex);
+            if (this.fastParserOption.isSet()) {
+                this.fastReader = new FastArffReader(openFileStream(), classIndex);
+                if (this.fastReader.isSupported()) {
+                    this.instances = this.fastReader.getHeader();
+                } else {
+                    // fall back to the standard reader
+                    closeReaders();
+                }
+            }
+            if (this.fastReader == null) {
+                this.fileReader = new BufferedReader(new InputStreamReader(
+                        openFileStream()));
+                this.instances = new Instances(this.fileReader, 1, classIndex);
+            }
             if (classIndex < 0) {
 		this.instances.setClassIndex(this.instances.numAttributes() - 1);
             } else if (this.classIndexOption.getValue() > 0) {
@@ -149,18 +163,46 @@ public class ArffFileStream extends AbstractOptionHandler implements
         this.clusterEvents = new ArrayList<ClusterEvent>();
     }
 
+    /**
+     * Opens the ARFF file, wrapped in the progress monitor used for the
+     * estimation of the remaining instances. Compressed files (.gz, .zip,
+     * .zst) are decompressed in a separate thread.
+     */
+    protected InputStream openFileStream() throws IOException {
+        InputStream fileStream = new FileInputStream(this.arffFileOption.getFile());
+        this.fileProgressMonitor = new InputStreamProgressMonitor(
+                fileStream);
+        return DecompressingInputStream.open(this.fileProgressMonitor,
+                this.arffFileOption.getFile().getName());
+    }
+
+    protected void closeReaders() throws IOException {
+        if (this.fileReader != null) {
+            this.fileReader.close();
+            this.fileReader = null;
+        }
+        if (this.fastReader != null) {
+            this.fastReader.close();
+            this.fastReader = null;
+        }
+    }
+
     protected boolean readNextInstanceFromFile() {
         try {
-            if (this.instances.readInstance(this.fileReader)) {
+            if (this.fastReader != null) {
+                Instance instance = this.fastReader.readInstance();
+                if (instance != null) {
+                    this.lastInstanceRead = new InstanceExample(instance);
+                    this.numInstancesRead++;
+                    return true;
+                }
+            } else if (this.instances.readInstance(this.fileReader)) {
                 this.lastInstanceRead = new InstanceExample(this.instances.instance(0));
                 this.instances.delete(); // keep instances clean
                 this.numInstancesRead++;
                 return true;
             }
-            if (this.fileReader != null) {
-                this.fileReader.close();
-                this.fileReader = null;
-            }
+            closeReaders();
             return false;
         } catch (IOException ioe) {
             throw new RuntimeException(
@@ -0,0 +1,287 @@
+/*
+ *    BinaryFileStream.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import com.github.javacliparser.FileOption;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import moa.core.HeaderBoundInstances;
+import moa.core.InstanceExample;
+import moa.core.ObjectRepository;
+import moa.options.AbstractOptionHandler;
+import moa.tasks.TaskMonitor;
+
+/**
+ * Stream reading the binary cache files written by the task
+ * <code>WriteStreamToBinaryFile</code>.
+ *
+ * <p>The rows are stored as primitive values, so replaying the file involves
+ * no parsing: each chunk of the file is memory-mapped and the instances are
+ * copied out of it. The format (all values little-endian) is:</p>
+ * <ul>
+ * <li>the magic number, the class index and the length of the header,
+ * followed by the header in ARFF (UTF-8)</li>
+ * <li>the chunks, each a sequence of rows; a row is the number of values
+ * (-1 for a dense row), the weight, and the values (dense) or the indices
+ * followed by the values (sparse)</li>
+ * <li>the chunk index: offset, length and number of rows of every chunk</li>
+ * <li>the trailer: offset of the index, number of chunks, number of
+ * instances and the magic number</li>
+ * </ul>
+ *
+ * @version $Revision: 1 $
+ */
+public class BinaryFileStream extends AbstractOptionHandler implements
+        InstanceStream {
+
+    @Override
+    public String getPurposeString() {
+        return "A stream read from a binary cache file.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public static final long MAGIC = 0x4d4f41424e524931L;
+
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    public static final int DENSE_ROW = -1;
+
+    public static final int TRAILER_SIZE = 8 + 4 + 8 + 8;
+
+    public static final int INDEX_ENTRY_SIZE = 8 + 4 + 4;
+
+    public FileOption binaryFileOption = new FileOption("binaryFile", 'f',
+            "Binary cache file to load.", null, "bin", false);
+
+    protected InstancesHeader header;
+
+    protected int numAttributes;
+
+    protected transient RandomAccessFile file;
+
+    protected long[] chunkOffsets;
+
+    protected int[] chunkLengths;
+
+    protected int[] chunkSizes;
+
+    protected long numInstances;
+
+    protected long numInstancesRead;
+
+    protected int currentChunk;
+
+    protected int rowsLeftInChunk;
+
+    protected transient ByteBuffer chunk;
+
+    public BinaryFileStream() {
+    }
+
+    public BinaryFileStream(String binaryFileName) {
+        this.binaryFileOption.setValue(binaryFileName);
+        restart();
+    }
+
+    @Override
+    public void prepareForUseImpl(TaskMonitor monitor,
+            ObjectRepository repository) {
+        restart();
+    }
+
+    @Override
+    public InstancesHeader getHeader() {
+        return this.header;
+    }
+
+    @Override
+    public long estimatedRemainingInstances() {
+        return this.numInstances - this.numInstancesRead;
+    }
+
+    @Override
+    public boolean hasMoreInstances() {
+        return this.numInstancesRead < this.numInstances;
+    }
+
+    @Override
+    public InstanceExample nextInstance() {
+        try {
+            while (this.rowsLeftInChunk == 0) {
+                mapChunk(++this.currentChunk);
+            }
+        } catch (IOException ioe) {
+            throw new RuntimeException(
+                    "BinaryFileStream failed to read instance from file.", ioe);
+        }
+        this.rowsLeftInChunk--;
+        this.numInstancesRead++;
+        Instance instance = readRow(this.chunk);
+        if (this.numInstancesRead == this.numInstances) {
+            close();
+        }
+        return new InstanceExample(instance);
+    }
+
+    protected Instance readRow(ByteBuffer buffer) {
+        int numValues = buffer.getInt();
+        double weight = buffer.getDouble();
+        if (numValues == DENSE_ROW) {
+            double[] values = new double[this.numAttributes];
+            buffer.asDoubleBuffer().get(values);
+            buffer.position(buffer.position() + 8 * this.numAttributes);
+            return HeaderBoundInstances.newDense(weight, values, this.header);
+        }
+        int[] indices = new int[numValues];
+        buffer.asIntBuffer().get(indices);
+        buffer.position(buffer.position() + 4 * numValues);
+        double[] values = new double[numValues];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + 8 * numValues);
+        return HeaderBoundInstances.newSparse(weight, values, indices,
+                this.numAttributes, this.header);
+    }
+
+    /**
+     * Writes an instance as a row of the binary format, growing the buffer if
+     * needed. Returns the buffer written to.
+     */
+    public static ByteBuffer writeRow(ByteBuffer buffer, Instance instance) {
+        boolean sparse = instance instanceof SparseInstance;
+        int numValues = sparse ? instance.numValues() : instance.numAttributes();
+        int size = 4 + 8 + (sparse ? 12 : 8) * numValues;
+        if (buffer.remaining() < size) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * buffer.capacity(),
+                    buffer.position() + size)).order(BYTE_ORDER);
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+        buffer.putInt(sparse ? numValues : DENSE_ROW);
+        buffer.putDouble(instance.weight());
+        if (sparse) {
+            for (int k = 0; k < numValues; k++) {
+                buffer.putInt(instance.index(k));
+            }
+            for (int k = 0; k < numValues; k++) {
+                buffer.putDouble(instance.valueSparse(k));
+            }
+        } else {
+            for (int i = 0; i < numValues; i++) {
+                buffer.putDouble(instance.value(i));
+            }
+        }
+        return buffer;
+    }
+
+    @Override
+    public boolean isRestartable() {
+        return true;
+    }
+
+    @Override
+    public void restart() {
+        try {
+            close();
+            this.file = new RandomAccessFile(this.binaryFileOption.getFile(), "r");
+            FileChannel channel = this.file.getChannel();
+            ByteBuffer trailer = read(channel, channel.size() - TRAILER_SIZE, TRAILER_SIZE);
+            long indexOffset = trailer.getLong();
+            int numChunks = trailer.getInt();
+            this.numInstances = trailer.getLong();
+            if (trailer.getLong() != MAGIC) {
+                throw new IOException("Not a binary stream file (or truncated): "
+                        + this.binaryFileOption.getFile());
+            }
+            ByteBuffer index = read(channel, indexOffset, numChunks * INDEX_ENTRY_SIZE);
+            this.chunkOffsets = new long[numChunks];
+            this.chunkLengths = new int[numChunks];
+            this.chunkSizes = new int[numChunks];
+            for (int c = 0; c < numChunks; c++) {
+                this.chunkOffsets[c] = index.getLong();
+                this.chunkLengths[c] = index.getInt();
+                this.chunkSizes[c] = index.getInt();
+            }
+            ByteBuffer start = read(channel, 0, 8 + 4 + 4);
+            if (start.getLong() != MAGIC) {
+                throw new IOException("Not a binary stream file: "
+                        + this.binaryFileOption.getFile());
+            }
+            int classIndex = start.getInt();
+            byte[] headerBytes = new byte[start.getInt()];
+            read(channel, 8 + 4 + 4, headerBytes.length).get(headerBytes);
+            Instances instances = new Instances(new StringReader(
+                    new String(headerBytes, StandardCharsets.UTF_8)), 0, -1);
+            instances.setClassIndex(classIndex);
+            this.header = new InstancesHeader(instances);
+            this.numAttributes = this.header.numAttributes();
+            this.numInstancesRead = 0;
+            this.currentChunk = -1;
+            this.rowsLeftInChunk = 0;
+            this.chunk = null;
+            if (this.numInstances == 0) {
+                close();
+            }
+        } catch (IOException ioe) {
+            throw new RuntimeException("BinaryFileStream restart failed.", ioe);
+        }
+    }
+
+    protected void mapChunk(int c) throws IOException {
+        this.chunk = this.file.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                this.chunkOffsets[c], this.chunkLengths[c]).order(BYTE_ORDER);
+        this.rowsLeftInChunk = this.chunkSizes[c];
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(BYTE_ORDER);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of binary stream file.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    protected void close() {
+        if (this.file != null) {
+            try {
+                this.file.close();
+            } catch (IOException ioe) {
+                // read only
+            }
+            this.file = null;
+        }
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        // TODO Auto-generated method stub
+    }
+}
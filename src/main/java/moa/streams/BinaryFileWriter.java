@@ -0,0 +1,129 @@
+/*
+ *    BinaryFileWriter.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes instances to a binary cache file, read back by
+ * {@link BinaryFileStream} (see there for the format). The chunk index is
+ * written on {@link #close()}.
+ *
+ * @version $Revision: 1 $
+ */
+public class BinaryFileWriter implements Closeable {
+
+    protected FileChannel out;
+
+    protected int chunkSize;
+
+    protected ByteBuffer chunk;
+
+    protected int chunkRows;
+
+    // Offset, length and number of rows of the chunks written
+    protected List<long[]> chunks = new ArrayList<long[]>();
+
+    protected long numWritten;
+
+    /**
+     * Creates the file and writes the header.
+     *
+     * @param chunkSize size in bytes above which a chunk is written
+     */
+    public BinaryFileWriter(File file, InstancesHeader header, int chunkSize) throws IOException {
+        this.out = new FileOutputStream(file).getChannel();
+        this.chunkSize = chunkSize;
+        byte[] headerBytes = new Instances(header, 0).toString().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer start = ByteBuffer.allocate(8 + 4 + 4 + headerBytes.length)
+                .order(BinaryFileStream.BYTE_ORDER);
+        start.putLong(BinaryFileStream.MAGIC);
+        start.putInt(header.classIndex());
+        start.putInt(headerBytes.length);
+        start.put(headerBytes);
+        write(start);
+        this.chunk = ByteBuffer.allocate(chunkSize).order(BinaryFileStream.BYTE_ORDER);
+    }
+
+    public void write(Instance instance) throws IOException {
+        this.chunk = BinaryFileStream.writeRow(this.chunk, instance);
+        this.chunkRows++;
+        this.numWritten++;
+        if (this.chunk.position() >= this.chunkSize) {
+            flushChunk();
+        }
+    }
+
+    public long getNumWritten() {
+        return this.numWritten;
+    }
+
+    protected void flushChunk() throws IOException {
+        if (this.chunkRows > 0) {
+            this.chunks.add(new long[]{this.out.position(), this.chunk.position(), this.chunkRows});
+            write(this.chunk);
+            this.chunkRows = 0;
+        }
+    }
+
+    // Writes the buffer from its start to its position, and clears it
+    private void write(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            this.out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.out == null) {
+            return;
+        }
+        try {
+            flushChunk();
+            long indexOffset = this.out.position();
+            ByteBuffer index = ByteBuffer.allocate(this.chunks.size() * BinaryFileStream.INDEX_ENTRY_SIZE
+                    + BinaryFileStream.TRAILER_SIZE).order(BinaryFileStream.BYTE_ORDER);
+            for (long[] c : this.chunks) {
+                index.putLong(c[0]);
+                index.putInt((int) c[1]);
+                index.putInt((int) c[2]);
+            }
+            index.putLong(indexOffset);
+            index.putInt(this.chunks.size());
+            index.putLong(this.numWritten);
+            index.putLong(BinaryFileStream.MAGIC);
+            write(index);
+        } finally {
+            this.out.close();
+            this.out = null;
+        }
+    }
+}
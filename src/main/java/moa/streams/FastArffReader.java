@@ -0,0 +1,559 @@
+/*
+ *    FastArffReader.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import moa.core.HeaderBoundInstances;
+
+/**
+ * ARFF reader that parses the data section directly from bytes.
+ *
+ * <p>The input is read in blocks into a byte buffer, and every row (dense, or
+ * sparse with {index value} pairs, optionally followed by an {weight}) is
+ * parsed by a hand-written tokenizer straight into primitive arrays, without
+ * going through a StreamTokenizer and Strings. The header is parsed with the
+ * standard ARFF loader, and the instances returned are bound to it.</p>
+ *
+ * <p>Only numeric and nominal attributes are supported, see
+ * {@link #isSupported()}.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class FastArffReader implements Closeable {
+
+    protected static final int BUFFER_SIZE = 1 << 16;
+
+    // Nominal attributes with more values are looked up through a HashMap
+    protected static final int MAX_LINEAR_LOOKUP = 16;
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    protected InputStream in;
+
+    protected byte[] buffer = new byte[BUFFER_SIZE];
+
+    // Start of the unparsed data and end of the valid data in the buffer
+    protected int position;
+
+    protected int limit;
+
+    protected boolean endOfInput;
+
+    protected long lineNumber;
+
+    protected InstancesHeader header;
+
+    protected int numAttributes;
+
+    protected boolean supported;
+
+    protected boolean[] isNominal;
+
+    protected byte[][][] nominalValues;
+
+    protected HashMap<String, Integer>[] nominalIndices;
+
+    // Scratch arrays for sparse rows
+    protected int[] sparseIndices;
+
+    protected double[] sparseValues;
+
+    // Position in the buffer during the parsing of a line
+    private int cursor;
+
+    private int lineEnd;
+
+    public FastArffReader(InputStream in, int classIndex) throws IOException {
+        this.in = in;
+        readHeader(classIndex);
+    }
+
+    /**
+     * Returns the header read from the input. The class index can be set on
+     * it by the caller, the instances read afterwards are bound to it.
+     */
+    public InstancesHeader getHeader() {
+        return this.header;
+    }
+
+    /**
+     * Whether all the attributes of the header can be parsed by this reader
+     * (numeric and nominal attributes).
+     */
+    public boolean isSupported() {
+        return this.supported;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void readHeader(int classIndex) throws IOException {
+        StringBuilder headerText = new StringBuilder();
+        while (true) {
+            int end = nextLine();
+            if (end < 0) {
+                break;
+            }
+            String line = new String(this.buffer, this.position, end - this.position,
+                    StandardCharsets.UTF_8);
+            this.position = skipNewline(end);
+            headerText.append(line).append('\n');
+            if (line.trim().toLowerCase().startsWith(Instances.ARFF_DATA.toLowerCase())) {
+                break;
+            }
+        }
+        this.header = new InstancesHeader(new Instances(
+                new StringReader(headerText.toString()), 1, classIndex));
+        this.numAttributes = this.header.numAttributes();
+        this.supported = true;
+        this.isNominal = new boolean[this.numAttributes];
+        this.nominalValues = new byte[this.numAttributes][][];
+        this.nominalIndices = new HashMap[this.numAttributes];
+        for (int i = 0; i < this.numAttributes; i++) {
+            Attribute attribute = this.header.attribute(i);
+            if (attribute.isNominal()) {
+                this.isNominal[i] = true;
+                if (attribute.numValues() <= MAX_LINEAR_LOOKUP) {
+                    this.nominalValues[i] = new byte[attribute.numValues()][];
+                    for (int v = 0; v < attribute.numValues(); v++) {
+                        this.nominalValues[i][v] = attribute.value(v).getBytes(StandardCharsets.UTF_8);
+                    }
+                } else {
+                    this.nominalIndices[i] = new HashMap<String, Integer>();
+                    for (int v = 0; v < attribute.numValues(); v++) {
+                        this.nominalIndices[i].put(attribute.value(v), v);
+                    }
+                }
+            } else if (!attribute.isNumeric()) {
+                this.supported = false;
+            }
+        }
+        this.sparseIndices = new int[16];
+        this.sparseValues = new double[16];
+    }
+
+    /**
+     * Reads the next instance, or returns null at the end of the input.
+     */
+    public Instance readInstance() throws IOException {
+        while (true) {
+            int end = nextLine();
+            if (end < 0) {
+                return null;
+            }
+            this.cursor = this.position;
+            this.lineEnd = end;
+            skipSpaces();
+            if (this.cursor < this.lineEnd && this.buffer[this.cursor] != '%') {
+                Instance instance = this.buffer[this.cursor] == '{' ? parseSparse() : parseDense();
+                this.position = skipNewline(end);
+                return instance;
+            }
+            // empty line or comment
+            this.position = skipNewline(end);
+        }
+    }
+
+    protected Instance parseDense() {
+        double[] values = new double[this.numAttributes];
+        for (int i = 0; i < this.numAttributes; i++) {
+            if (i > 0) {
+                expect((byte) ',');
+            }
+            values[i] = parseValue(i);
+        }
+        return HeaderBoundInstances.newDense(parseWeight(), values, this.header);
+    }
+
+    protected Instance parseSparse() {
+        this.cursor++; // {
+        int numValues = 0;
+        skipSpaces();
+        if (peek() == '}') {
+            this.cursor++;
+        } else {
+            while (true) {
+                skipSpaces();
+                int index = parseIndex();
+                if (index < 0 || index >= this.numAttributes) {
+                    throw error("attribute index " + index + " out of range");
+                }
+                if (numValues == this.sparseIndices.length) {
+                    this.sparseIndices = Arrays.copyOf(this.sparseIndices, 2 * numValues);
+                    this.sparseValues = Arrays.copyOf(this.sparseValues, 2 * numValues);
+                }
+                this.sparseIndices[numValues] = index;
+                this.sparseValues[numValues] = parseValue(index);
+                numValues++;
+                skipSpaces();
+                byte c = peek();
+                this.cursor++;
+                if (c == '}') {
+                    break;
+                } else if (c != ',') {
+                    throw error("',' or '}' expected");
+                }
+            }
+        }
+        return HeaderBoundInstances.newSparse(parseWeight(),
+                Arrays.copyOf(this.sparseValues, numValues),
+                Arrays.copyOf(this.sparseIndices, numValues), this.numAttributes, this.header);
+    }
+
+    // Parses the optional ", {weight}" at the end of a row (a trailing comma is accepted)
+    protected double parseWeight() {
+        skipSpaces();
+        double weight = 1.0;
+        if (peek() == ',') {
+            this.cursor++;
+            skipSpaces();
+        }
+        if (peek() == '{') {
+            this.cursor++;
+            skipSpaces();
+            weight = parseNumber();
+            skipSpaces();
+            expect((byte) '}');
+            skipSpaces();
+        }
+        if (this.cursor < this.lineEnd) {
+            throw error("end of line expected");
+        }
+        return weight;
+    }
+
+    protected double parseValue(int attributeIndex) {
+        skipSpaces();
+        byte c = peek();
+        if (c == '?') {
+            this.cursor++;
+            return Double.NaN;
+        }
+        if (this.isNominal[attributeIndex]) {
+            return parseNominal(attributeIndex);
+        }
+        return parseNumber();
+    }
+
+    protected double parseNominal(int attributeIndex) {
+        int start;
+        int end;
+        boolean escaped = false;
+        byte c = peek();
+        if (c == '\'' || c == '"') {
+            start = ++this.cursor;
+            while (this.cursor < this.lineEnd && this.buffer[this.cursor] != c) {
+                if (this.buffer[this.cursor] == '\\') {
+                    escaped = true;
+                    this.cursor++;
+                }
+                this.cursor++;
+            }
+            end = this.cursor;
+            this.cursor++; // closing quote
+        } else {
+            start = this.cursor;
+            while (this.cursor < this.lineEnd && !isDelimiter(this.buffer[this.cursor])) {
+                this.cursor++;
+            }
+            end = this.cursor;
+        }
+        byte[][] values = this.nominalValues[attributeIndex];
+        if (escaped) {
+            String value = unescape(start, end);
+            int v = this.header.attribute(attributeIndex).indexOfValue(value);
+            if (v >= 0) {
+                return v;
+            }
+            throw error("nominal value " + value + " not declared in header for attribute "
+                    + this.header.attribute(attributeIndex).name());
+        }
+        if (values != null) {
+            int length = end - start;
+            for (int v = 0; v < values.length; v++) {
+                byte[] value = values[v];
+                if (value.length == length) {
+                    int k = 0;
+                    while (k < length && value[k] == this.buffer[start + k]) {
+                        k++;
+                    }
+                    if (k == length) {
+                        return v;
+                    }
+                }
+            }
+        } else {
+            Integer v = this.nominalIndices[attributeIndex].get(
+                    new String(this.buffer, start, end - start, StandardCharsets.UTF_8));
+            if (v != null) {
+                return v;
+            }
+        }
+        throw error("nominal value " + new String(this.buffer, start, end - start,
+                StandardCharsets.UTF_8) + " not declared in header for attribute "
+                + this.header.attribute(attributeIndex).name());
+    }
+
+    /**
+     * Returns the quoted value between start and end with its escape
+     * sequences replaced, as the StreamTokenizer of the header parser does.
+     */
+    protected String unescape(int start, int end) {
+        String quoted = new String(this.buffer, start, end - start, StandardCharsets.UTF_8);
+        StringBuilder sb = new StringBuilder(quoted.length());
+        for (int i = 0; i < quoted.length(); i++) {
+            char c = quoted.charAt(i);
+            if (c != '\\' || i + 1 == quoted.length()) {
+                sb.append(c);
+                continue;
+            }
+            c = quoted.charAt(++i);
+            switch (c) {
+                case 'a':
+                    sb.append((char) 7);
+                    break;
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'v':
+                    sb.append((char) 11);
+                    break;
+                default:
+                    if (c >= '0' && c <= '7') {
+                        // octal, up to three digits below \377
+                        int octal = c - '0';
+                        int maxDigits = c <= '3' ? 2 : 1;
+                        while (maxDigits-- > 0 && i + 1 < quoted.length()
+                                && quoted.charAt(i + 1) >= '0' && quoted.charAt(i + 1) <= '7') {
+                            octal = octal * 8 + quoted.charAt(++i) - '0';
+                        }
+                        sb.append((char) octal);
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses a decimal number. Numbers whose mantissa fits in 53 bits and with
+     * a small exponent are computed from the mantissa and a power of ten, both
+     * exact doubles, so that the result is correctly rounded as with
+     * Double.parseDouble; other numbers fall back to Double.parseDouble.
+     */
+    protected double parseNumber() {
+        int start = this.cursor;
+        boolean negative = false;
+        byte c = peek();
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            this.cursor++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        while (this.cursor < this.lineEnd && (c = this.buffer[this.cursor]) >= '0' && c <= '9') {
+            anyDigit = true;
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa > 0) {
+                    digits++;
+                }
+            } else {
+                exponent++;
+            }
+            this.cursor++;
+        }
+        if (this.cursor < this.lineEnd && this.buffer[this.cursor] == '.') {
+            this.cursor++;
+            while (this.cursor < this.lineEnd && (c = this.buffer[this.cursor]) >= '0' && c <= '9') {
+                anyDigit = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    exponent--;
+                    if (mantissa > 0) {
+                        digits++;
+                    }
+                }
+                this.cursor++;
+            }
+        }
+        boolean fastPath = anyDigit && digits < 18 && mantissa < (1L << 53);
+        if (this.cursor < this.lineEnd && ((c = this.buffer[this.cursor]) == 'e' || c == 'E')) {
+            this.cursor++;
+            boolean negativeExponent = false;
+            if (this.cursor < this.lineEnd && ((c = this.buffer[this.cursor]) == '-' || c == '+')) {
+                negativeExponent = c == '-';
+                this.cursor++;
+            }
+            int exp = 0;
+            boolean anyExpDigit = false;
+            while (this.cursor < this.lineEnd && (c = this.buffer[this.cursor]) >= '0' && c <= '9') {
+                anyExpDigit = true;
+                if (exp < 100000) {
+                    exp = exp * 10 + (c - '0');
+                }
+                this.cursor++;
+            }
+            fastPath &= anyExpDigit;
+            exponent += negativeExponent ? -exp : exp;
+        }
+        if (this.cursor < this.lineEnd && !isDelimiter(this.buffer[this.cursor])) {
+            // NaN, Infinity, hexadecimal, etc.
+            while (this.cursor < this.lineEnd && !isDelimiter(this.buffer[this.cursor])) {
+                this.cursor++;
+            }
+            fastPath = false;
+        }
+        if (fastPath && exponent >= -22 && exponent <= 22) {
+            double value = (double) mantissa;
+            value = exponent < 0 ? value / POWERS_OF_TEN[-exponent] : value * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+        String token = new String(this.buffer, start, this.cursor - start, StandardCharsets.US_ASCII);
+        try {
+            return Double.parseDouble(token);
+        } catch (NumberFormatException nfe) {
+            throw error("number expected, found " + token);
+        }
+    }
+
+    protected int parseIndex() {
+        int index = 0;
+        boolean anyDigit = false;
+        byte c;
+        while (this.cursor < this.lineEnd && (c = this.buffer[this.cursor]) >= '0' && c <= '9') {
+            index = index * 10 + (c - '0');
+            anyDigit = true;
+            this.cursor++;
+        }
+        if (!anyDigit) {
+            throw error("attribute index expected");
+        }
+        return index;
+    }
+
+    private static boolean isDelimiter(byte c) {
+        return c == ',' || c == '}' || c == ' ' || c == '\t' || c == '\r';
+    }
+
+    private byte peek() {
+        return this.cursor < this.lineEnd ? this.buffer[this.cursor] : (byte) '\n';
+    }
+
+    private void skipSpaces() {
+        while (this.cursor < this.lineEnd) {
+            byte c = this.buffer[this.cursor];
+            if (c != ' ' && c != '\t' && c != '\r') {
+                break;
+            }
+            this.cursor++;
+        }
+    }
+
+    private void expect(byte expected) {
+        skipSpaces();
+        if (peek() != expected) {
+            throw error("'" + (char) expected + "' expected");
+        }
+        this.cursor++;
+    }
+
+    private RuntimeException error(String message) {
+        return new RuntimeException("ARFF parse error on line "
+                + this.lineNumber + ": " + message);
+    }
+
+    /**
+     * Makes sure that a whole line starting at position is in the buffer,
+     * reading more input (and growing the buffer) as needed. Returns the index
+     * of the end of the line (the '\n' or the end of the input), or -1 if there
+     * is no more input.
+     */
+    protected int nextLine() throws IOException {
+        int scan = this.position;
+        while (true) {
+            while (scan < this.limit) {
+                if (this.buffer[scan] == '\n') {
+                    this.lineNumber++;
+                    return scan;
+                }
+                scan++;
+            }
+            if (this.endOfInput) {
+                if (this.position < this.limit) {
+                    this.lineNumber++;
+                    return this.limit;
+                }
+                return -1;
+            }
+            // compact, grow if the line does not fit, and read more
+            int pending = this.limit - this.position;
+            if (this.position > 0) {
+                System.arraycopy(this.buffer, this.position, this.buffer, 0, pending);
+            } else if (pending == this.buffer.length) {
+                this.buffer = Arrays.copyOf(this.buffer, 2 * this.buffer.length);
+            }
+            scan -= this.position;
+            this.position = 0;
+            this.limit = pending;
+            int read = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+            if (read < 0) {
+                this.endOfInput = true;
+            } else {
+                this.limit += read;
+            }
+        }
+    }
+
+    private int skipNewline(int end) {
+        return end < this.limit ? end + 1 : end;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.in != null) {
+            this.in.close();
+            this.in = null;
+        }
+    }
+}
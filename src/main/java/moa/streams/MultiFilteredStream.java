@@ -19,15 +19,21 @@
  */
 package moa.streams;
 
+import java.util.ArrayList;
+import java.util.List;
+import moa.AbstractMOAObject;
 import moa.core.Example;
 import moa.core.InstanceExample;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
 import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
 import moa.options.ClassOption;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.ListOption;
 import com.github.javacliparser.Option;
 import moa.options.OptionHandler;
+import moa.streams.filters.FilterRow;
+import moa.streams.filters.RowTransformFilter;
 import moa.streams.filters.StreamFilter;
 import moa.tasks.TaskMonitor;
 import com.yahoo.labs.samoa.instances.Instance;
@@ -35,6 +41,11 @@ import com.yahoo.labs.samoa.instances.Instance;
 /**
  * Class for representing a stream that is filtered.
  *
+ * <p>Consecutive filters implementing <code>RowTransformFilter</code> are
+ * fused: they transform a shared row in a single pass, and only the last of
+ * them creates an instance. Fused filters output dense instances, unless the
+ * last one produces sparse rows.</p>
+ *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
@@ -57,6 +68,9 @@ public class MultiFilteredStream extends AbstractOptionHandler implements
             "Stream filter.", StreamFilter.class, "AddNoiseFilter"),
             new Option[0], ',');
 
+    public FlagOption unfusedOption = new FlagOption("unfused", 'u',
+            "Apply the filters one after the other, each creating its own instance.");
+
     protected ExampleStream filterChain;
 
     @Override
@@ -81,11 +95,31 @@ public class MultiFilteredStream extends AbstractOptionHandler implements
             }
         }
         ExampleStream chain = (ExampleStream) getPreparedClassOption(this.streamOption);
+        ExampleStream previous = chain;
+        List<RowTransformFilter> run = new ArrayList<RowTransformFilter>();
         for (int i = 0; i < filters.length; i++) {
-            filters[i].setInputStream(chain);
-            chain = filters[i];
+            if (filters[i] instanceof RowTransformFilter && !this.unfusedOption.isSet()) {
+                filters[i].setInputStream(previous);
+                run.add((RowTransformFilter) filters[i]);
+            } else {
+                chain = fuse(chain, run);
+                filters[i].setInputStream(chain);
+                chain = filters[i];
+            }
+            previous = filters[i];
         }
-        this.filterChain = chain;
+        this.filterChain = fuse(chain, run);
+    }
+
+    // Replaces the filters of the run, if any, by a single stage, and empties the run
+    private static ExampleStream fuse(ExampleStream input, List<RowTransformFilter> run) {
+        if (run.isEmpty()) {
+            return input;
+        }
+        ExampleStream stage = run.size() == 1 ? run.get(0)
+                : new FusedFilters(input, run.toArray(new RowTransformFilter[run.size()]));
+        run.clear();
+        return stage;
     }
 
     @Override
@@ -122,4 +156,82 @@ public class MultiFilteredStream extends AbstractOptionHandler implements
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
     }
+
+    /**
+     * Consecutive row transform filters run as a single pass. The filters
+     * stay chained to each other, which gives the header, the restarts and
+     * the estimates of the stage; only the instances bypass the chain.
+     */
+    protected static class FusedFilters extends AbstractMOAObject implements
+            ExampleStream {
+
+        private static final long serialVersionUID = 1L;
+
+        protected ExampleStream input;
+
+        protected RowTransformFilter[] filters;
+
+        protected InstancesHeader outputHeader;
+
+        protected FilterRow row = new FilterRow();
+
+        public FusedFilters(ExampleStream input, RowTransformFilter[] filters) {
+            this.input = input;
+            this.filters = filters;
+        }
+
+        protected RowTransformFilter last() {
+            return this.filters[this.filters.length - 1];
+        }
+
+        @Override
+        public InstancesHeader getHeader() {
+            return last().getHeader();
+        }
+
+        @Override
+        public long estimatedRemainingInstances() {
+            return this.input.estimatedRemainingInstances();
+        }
+
+        @Override
+        public boolean hasMoreInstances() {
+            return this.input.hasMoreInstances();
+        }
+
+        @Override
+        public Example nextInstance() {
+            Instance inst = (Instance) this.input.nextInstance().getData();
+            if (this.outputHeader == null) {
+                InstancesHeader header = inst.dataset() instanceof InstancesHeader
+                        ? (InstancesHeader) inst.dataset()
+                        : new InstancesHeader(inst.dataset());
+                for (RowTransformFilter filter : this.filters) {
+                    header = filter.prepareRowTransform(header);
+                }
+                this.outputHeader = header;
+            }
+            this.row.setInstance(inst);
+            for (RowTransformFilter filter : this.filters) {
+                filter.transformRow(this.row);
+            }
+            return new InstanceExample(this.row.toInstance(this.outputHeader));
+        }
+
+        @Override
+        public boolean isRestartable() {
+            return last().isRestartable();
+        }
+
+        @Override
+        public void restart() {
+            // restarts the input and every filter through the chain
+            last().restart();
+            this.outputHeader = null;
+        }
+
+        @Override
+        public void getDescription(StringBuilder sb, int indent) {
+        }
+    }
 }
@@ -29,6 +29,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader; 
 import com.github.javacliparser.RangeOption;  // jesse
+import moa.core.DecompressingInputStream;
 import moa.core.InputStreamProgressMonitor;
 import moa.core.InstanceExample;
 import moa.core.ObjectRepository;
@@ -52,7 +53,7 @@ public class MultiTargetArffFileStream extends AbstractOptionHandler implements
     private static final long serialVersionUID = 1L;
 
     public FileOption arffFileOption = new FileOption("arffFile", 'f',
-            "ARFF file to load.", null, "arff", false);
+            "ARFF file to load, possibly compressed (.gz, .zip or .zst).", null, "arff", false);
 
     public RangeOption outputAttributesOption = new RangeOption(
             "outputAttributes",
@@ -137,7 +138,8 @@ public class MultiTargetArffFileStream extends AbstractOptionHandler implements
             this.fileProgressMonitor = new InputStreamProgressMonitor(
                     fileStream);
             this.fileReader = new BufferedReader(new InputStreamReader(
-                    this.fileProgressMonitor));
+                    DecompressingInputStream.open(this.fileProgressMonitor,
+                    this.arffFileOption.getFile().getName())));
 			// jesse -----
 			/*int cs[] = this.outputAttributesOption.getRange(); 
 			if (cs.length == 1) {
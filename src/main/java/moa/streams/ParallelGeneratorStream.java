@@ -0,0 +1,282 @@
+/*
+ *    ParallelGeneratorStream.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import com.github.javacliparser.FloatOption;
+import com.github.javacliparser.IntOption;
+import com.github.javacliparser.Option;
+import com.github.javacliparser.Options;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import moa.core.InstanceExample;
+import moa.core.ObjectRepository;
+import moa.options.AbstractOptionHandler;
+import moa.options.ClassOption;
+import moa.options.OptionHandler;
+import moa.tasks.TaskMonitor;
+
+/**
+ * Stream generating the instances of a generator in parallel, by blocks.
+ *
+ * <p>The stream is split into blocks of <code>-b</code> instances. Every block
+ * is generated by a copy of the generator, restarted with its own instance
+ * seed, and the blocks are generated by worker threads ahead of the reader
+ * and returned in order. The seeds of the blocks are drawn in order from a
+ * <code>SplittableRandom</code> seeded with <code>-r</code>, so the stream is
+ * the same for a given seed and block size whatever the number of threads.
+ * The model of the generator (e.g. the centroids of RandomRBFGenerator or the
+ * tree of RandomTreeGenerator) is built once and shared by all the blocks.
+ * Generators whose concept changes over time would start again from the
+ * initial concept at every block, so generators set to drift are rejected.</p>
+ *
+ * <p>The generator must have an <code>instanceRandomSeed</code> option, like
+ * the generators of moa.streams.generators. The worker threads are stopped by
+ * {@link #close()}.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class ParallelGeneratorStream extends AbstractOptionHandler implements
+        InstanceStream {
+
+    @Override
+    public String getPurposeString() {
+        return "A generator whose instances are generated by blocks in parallel threads.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String SEED_OPTION_NAME = "instanceRandomSeed";
+
+    // Options of the generators of moa.streams.generators that make them drift when not 0
+    protected static final String[] DRIFT_OPTION_NAMES = {"driftInterval", "speedChange", "magChange"};
+
+    public ClassOption generatorOption = new ClassOption("generator", 'g',
+            "Generator of the instances.", InstanceStream.class,
+            "generators.RandomTreeGenerator");
+
+    public IntOption blockSizeOption = new IntOption("blockSize", 'b',
+            "Number of instances of every block.", 10000, 1, Integer.MAX_VALUE);
+
+    public IntOption numberOfThreadsOption = new IntOption("numberOfThreads", 't',
+            "Number of threads generating the blocks (0 = as many as processors).",
+            0, 0, Integer.MAX_VALUE);
+
+    public IntOption randomSeedOption = new IntOption("randomSeed", 'r',
+            "Seed of the random generator of the seeds of the blocks.", 1);
+
+    protected InstancesHeader header;
+
+    // Copies of the generator not in use by a worker
+    protected transient BlockingQueue<InstanceStream> generators;
+
+    protected transient ExecutorService executor;
+
+    protected transient Deque<Future<Instance[]>> pending;
+
+    protected transient SplittableRandom seeds;
+
+    protected int numThreads;
+
+    protected Instance[] block;
+
+    protected int blockPosition;
+
+    protected boolean lastBlock;
+
+    @Override
+    public void prepareForUseImpl(TaskMonitor monitor,
+            ObjectRepository repository) {
+        InstanceStream generator = (InstanceStream) getPreparedClassOption(this.generatorOption);
+        seedOption(generator);
+        checkStationary(generator);
+        this.header = generator.getHeader();
+        this.numThreads = this.numberOfThreadsOption.getValue() > 0
+                ? this.numberOfThreadsOption.getValue()
+                : Runtime.getRuntime().availableProcessors();
+        this.generators = new ArrayBlockingQueue<InstanceStream>(this.numThreads);
+        this.generators.add(generator);
+        for (int i = 1; i < this.numThreads; i++) {
+            this.generators.add((InstanceStream) generator.copy());
+        }
+        this.executor = Executors.newFixedThreadPool(this.numThreads, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Generation of "
+                        + ParallelGeneratorStream.this.generatorOption.getValueAsCLIString());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.pending = new ArrayDeque<Future<Instance[]>>();
+        restart();
+    }
+
+    protected static IntOption seedOption(InstanceStream generator) {
+        if (generator instanceof OptionHandler) {
+            Option option = ((OptionHandler) generator).getOptions().getOption(SEED_OPTION_NAME);
+            if (option instanceof IntOption) {
+                return (IntOption) option;
+            }
+        }
+        throw new IllegalArgumentException(generator.getClass().getName()
+                + " has no " + SEED_OPTION_NAME + " option to generate blocks.");
+    }
+
+    protected static void checkStationary(InstanceStream generator) {
+        Options options = ((OptionHandler) generator).getOptions();
+        for (String name : DRIFT_OPTION_NAMES) {
+            Option option = options.getOption(name);
+            double value = option instanceof IntOption ? ((IntOption) option).getValue()
+                    : option instanceof FloatOption ? ((FloatOption) option).getValue() : 0.0;
+            if (value != 0.0) {
+                throw new IllegalArgumentException(generator.getClass().getName()
+                        + " drifts (" + name + " = " + option.getValueAsCLIString()
+                        + "), its blocks cannot be generated independently.");
+            }
+        }
+    }
+
+    protected void submitBlock() {
+        final int seed = this.seeds.split().nextInt();
+        final int blockSize = this.blockSizeOption.getValue();
+        this.pending.add(this.executor.submit(new Callable<Instance[]>() {
+
+            @Override
+            public Instance[] call() throws InterruptedException {
+                InstanceStream generator = ParallelGeneratorStream.this.generators.take();
+                try {
+                    return generateBlock(generator, seed, blockSize);
+                } finally {
+                    ParallelGeneratorStream.this.generators.add(generator);
+                }
+            }
+        }));
+    }
+
+    // Runs in a worker thread
+    protected static Instance[] generateBlock(InstanceStream generator, int seed, int blockSize) {
+        seedOption(generator).setValue(seed);
+        generator.restart();
+        Instance[] instances = new Instance[blockSize];
+        int size = 0;
+        while (size < blockSize && generator.hasMoreInstances()) {
+            instances[size++] = generator.nextInstance().getData();
+        }
+        return size < blockSize ? Arrays.copyOf(instances, size) : instances;
+    }
+
+    @Override
+    public InstancesHeader getHeader() {
+        return this.header;
+    }
+
+    @Override
+    public long estimatedRemainingInstances() {
+        return -1;
+    }
+
+    @Override
+    public boolean hasMoreInstances() {
+        while (this.block == null || this.blockPosition == this.block.length) {
+            if (this.lastBlock) {
+                return false;
+            }
+            try {
+                this.block = this.pending.poll().get();
+            } catch (InterruptedException ie) {
+                throw new RuntimeException("Interrupted while waiting for the next block.", ie);
+            } catch (ExecutionException ee) {
+                throw new RuntimeException("Failed generating a block.", ee.getCause());
+            }
+            this.blockPosition = 0;
+            if (this.block.length < this.blockSizeOption.getValue()) {
+                // the generator ended
+                this.lastBlock = true;
+            } else {
+                submitBlock();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public InstanceExample nextInstance() {
+        if (!hasMoreInstances()) {
+            return null;
+        }
+        Instance instance = this.block[this.blockPosition];
+        this.block[this.blockPosition++] = null;
+        return new InstanceExample(instance);
+    }
+
+    @Override
+    public boolean isRestartable() {
+        return true;
+    }
+
+    @Override
+    public void restart() {
+        for (Future<Instance[]> future : this.pending) {
+            future.cancel(false);
+        }
+        this.pending.clear();
+        this.seeds = new SplittableRandom(this.randomSeedOption.getValue());
+        this.block = null;
+        this.lastBlock = false;
+        for (int i = 0; i < 2 * this.numThreads; i++) {
+            submitBlock();
+        }
+    }
+
+    /**
+     * Stops the worker threads and discards the blocks generated ahead. The
+     * stream must not be used afterwards.
+     */
+    public void close() {
+        if (this.pending != null) {
+            for (Future<Instance[]> future : this.pending) {
+                future.cancel(true);
+            }
+            this.pending.clear();
+        }
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+        this.block = null;
+        this.lastBlock = true;
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        // TODO Auto-generated method stub
+    }
+}
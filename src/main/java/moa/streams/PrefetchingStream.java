@@ -0,0 +1,236 @@
+/*
+ *    PrefetchingStream.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import moa.core.Example;
+import moa.core.InstanceExample;
+import moa.core.ObjectRepository;
+import moa.options.AbstractOptionHandler;
+import moa.options.ClassOption;
+import moa.tasks.TaskMonitor;
+
+/**
+ * Stream that reads ahead from another stream in a separate thread.
+ *
+ * <p>A producer thread pulls the examples from the wrapped stream (which can
+ * be a FilteredStream or any other chain) into a bounded buffer, so that
+ * reading, parsing or generating the next examples overlaps with the learning
+ * done by the caller. The examples are returned in the same order. On
+ * restart, the producer is stopped, the buffered examples are discarded and
+ * the wrapped stream is restarted.</p>
+ *
+ * <p>The wrapped stream is only accessed from the producer thread once
+ * prefetching has started; its header is read before. Its estimate of the
+ * remaining instances is published by the producer after each example.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class PrefetchingStream extends AbstractOptionHandler implements
+        ExampleStream {
+
+    @Override
+    public String getPurposeString() {
+        return "A stream read ahead in a separate thread.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    // Marks the end of the wrapped stream in the buffer
+    private static final Example END_OF_STREAM = new InstanceExample(null);
+
+    public ClassOption streamOption = new ClassOption("stream", 's',
+            "Stream to prefetch.", ExampleStream.class,
+            "generators.RandomTreeGenerator");
+
+    public IntOption bufferSizeOption = new IntOption("bufferSize", 'b',
+            "Maximum number of examples read ahead.", 1024, 1, Integer.MAX_VALUE);
+
+    protected ExampleStream stream;
+
+    protected InstancesHeader header;
+
+    protected transient BlockingQueue<Example> buffer;
+
+    protected transient Thread producer;
+
+    protected transient volatile boolean stopped;
+
+    protected transient volatile Throwable error;
+
+    // Estimate of the wrapped stream, published by the producer
+    protected transient volatile long remainingEstimate;
+
+    // Next example to return, taken from the buffer by hasMoreInstances
+    protected Example next;
+
+    protected boolean endOfStream;
+
+    public PrefetchingStream() {
+    }
+
+    public PrefetchingStream(ExampleStream stream) {
+        this.stream = stream;
+        startPrefetching();
+    }
+
+    @Override
+    public void prepareForUseImpl(TaskMonitor monitor,
+            ObjectRepository repository) {
+        this.stream = (ExampleStream) getPreparedClassOption(this.streamOption);
+        startPrefetching();
+    }
+
+    protected void startPrefetching() {
+        this.header = this.stream.getHeader();
+        this.buffer = new ArrayBlockingQueue<Example>(this.bufferSizeOption.getValue());
+        this.next = null;
+        this.endOfStream = false;
+        this.error = null;
+        this.stopped = false;
+        this.remainingEstimate = this.stream.estimatedRemainingInstances();
+        this.producer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                prefetch();
+            }
+        }, "Prefetching of " + this.stream.getClass().getSimpleName());
+        this.producer.setDaemon(true);
+        this.producer.start();
+    }
+
+    // Runs in the producer thread
+    protected void prefetch() {
+        try {
+            while (this.stream.hasMoreInstances()) {
+                Example example = this.stream.nextInstance();
+                if (!enqueue(example)) {
+                    return;
+                }
+                // published once the example is in the buffer: it may be counted twice meanwhile, never missed
+                this.remainingEstimate = this.stream.estimatedRemainingInstances();
+            }
+        } catch (Throwable e) {
+            // an Error too, reported to the consumer instead of leaving it waiting
+            this.error = e;
+            throw e;
+        } finally {
+            enqueue(END_OF_STREAM);
+        }
+    }
+
+    // Waits for room in the buffer, returns false if prefetching was stopped meanwhile
+    private boolean enqueue(Example example) {
+        try {
+            while (!this.stopped) {
+                if (this.buffer.offer(example, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    protected void stopPrefetching() {
+        if (this.producer != null) {
+            // not interrupted, as that would close the channels of file streams
+            this.stopped = true;
+            try {
+                this.producer.join();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            this.producer = null;
+        }
+    }
+
+    @Override
+    public long estimatedRemainingInstances() {
+        long remaining = this.remainingEstimate;
+        if (remaining < 0) {
+            return remaining;
+        }
+        return remaining + this.buffer.size() + (this.next != null ? 1 : 0);
+    }
+
+    @Override
+    public InstancesHeader getHeader() {
+        return this.header;
+    }
+
+    @Override
+    public boolean hasMoreInstances() {
+        if (this.next == null && !this.endOfStream) {
+            try {
+                this.next = this.buffer.take();
+            } catch (InterruptedException ie) {
+                throw new RuntimeException("Interrupted while waiting for the next example.", ie);
+            }
+            if (this.next == END_OF_STREAM) {
+                this.next = null;
+                this.endOfStream = true;
+                if (this.error != null) {
+                    throw new RuntimeException("Prefetched stream failed.", this.error);
+                }
+            }
+        }
+        return this.next != null;
+    }
+
+    @Override
+    public Example nextInstance() {
+        if (!hasMoreInstances()) {
+            return null;
+        }
+        Example example = this.next;
+        this.next = null;
+        return example;
+    }
+
+    @Override
+    public boolean isRestartable() {
+        return this.stream.isRestartable();
+    }
+
+    @Override
+    public void restart() {
+        stopPrefetching();
+        this.stream.restart();
+        startPrefetching();
+    }
+
+    /**
+     * Stops reading ahead, when the stream is not read until its end. The
+     * stream must not be used afterwards.
+     */
+    public void close() {
+        stopPrefetching();
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        // TODO Auto-generated method stub
+    }
+}
@@ -25,6 +25,7 @@ import moa.core.AutoExpandVector;
 import moa.core.DoubleVector;
 import moa.core.GaussianEstimator;
 import moa.core.InstanceExample;
+import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
@@ -37,7 +38,8 @@ import com.yahoo.labs.samoa.instances.Instance;
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
-public class AddNoiseFilter extends AbstractStreamFilter {
+public class AddNoiseFilter extends AbstractStreamFilter implements
+        RowTransformFilter {
 
     @Override
     public String getPurposeString() {
@@ -59,6 +61,8 @@ public class AddNoiseFilter extends AbstractStreamFilter {
 
     protected AutoExpandVector<Object> attValObservers;
 
+    protected InstancesHeader rowHeader;
+
     @Override
     protected void restartImpl() {
         this.random = new Random(this.randomSeedOption.getValue());
@@ -74,25 +78,47 @@ public class AddNoiseFilter extends AbstractStreamFilter {
     //public InstanceExample nextInstance() {
     //    Instance inst = (Instance) ((Instance) this.inputStream.nextInstance().getData()).copy();
     public Instance filterInstance(Instance inst){
-        for (int i = 0; i < inst.numAttributes(); i++) {
-            double noiseFrac = i == inst.classIndex() ? this.classNoiseFractionOption.getValue()
+        double[] values = inst.toDoubleArray();
+        addNoise(values, inst.weight(), inst.dataset());
+        for (int i = 0; i < values.length; i++) {
+            inst.setValue(i, values[i]);
+        }
+        //return new InstanceExample(inst);
+        return inst;
+    }
+
+    @Override
+    public InstancesHeader prepareRowTransform(InstancesHeader inputHeader) {
+        this.rowHeader = inputHeader;
+        return inputHeader;
+    }
+
+    @Override
+    public void transformRow(FilterRow row) {
+        addNoise(row.getValues(), row.getWeight(), this.rowHeader);
+    }
+
+    protected void addNoise(double[] values, double weight, Instances header) {
+        int classIndex = header.classIndex();
+        for (int i = 0; i < values.length; i++) {
+            double noiseFrac = i == classIndex ? this.classNoiseFractionOption.getValue()
                     : this.attNoiseFractionOption.getValue();
-            if (inst.attribute(i).isNominal()) {
+            if (header.attribute(i).isNominal()) {
                 DoubleVector obs = (DoubleVector) this.attValObservers.get(i);
                 if (obs == null) {
                     obs = new DoubleVector();
                     this.attValObservers.set(i, obs);
                 }
-                int originalVal = (int) inst.value(i);
-                if (!inst.isMissing(i)) {
-                    obs.addToValue(originalVal, inst.weight());
+                int originalVal = (int) values[i];
+                if (!Double.isNaN(values[i])) {
+                    obs.addToValue(originalVal, weight);
                 }
                 if ((this.random.nextDouble() < noiseFrac)
                         && (obs.numNonZeroEntries() > 1)) {
                     do {
-                        inst.setValue(i, this.random.nextInt(obs.numValues()));
-                    } while (((int) inst.value(i) == originalVal)
-                            || (obs.getValue((int) inst.value(i)) == 0.0));
+                        values[i] = this.random.nextInt(obs.numValues());
+                    } while (((int) values[i] == originalVal)
+                            || (obs.getValue((int) values[i]) == 0.0));
                 }
             } else {
                 GaussianEstimator obs = (GaussianEstimator) this.attValObservers.get(i);
@@ -100,13 +126,10 @@ public class AddNoiseFilter extends AbstractStreamFilter {
                     obs = new GaussianEstimator();
                     this.attValObservers.set(i, obs);
                 }
-                obs.addObservation(inst.value(i), inst.weight());
-                inst.setValue(i, inst.value(i) + this.random.nextGaussian()
-                        * obs.getStdDev() * noiseFrac);
+                obs.addObservation(values[i], weight);
+                values[i] += this.random.nextGaussian() * obs.getStdDev() * noiseFrac;
             }
         }
-        //return new InstanceExample(inst);
-        return inst;
     }
 
     @Override
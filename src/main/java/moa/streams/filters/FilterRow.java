@@ -0,0 +1,123 @@
+/*
+ *    FilterRow.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams.filters;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import moa.core.HeaderBoundInstances;
+
+/**
+ * Row of values transformed by a sequence of {@link RowTransformFilter}s.
+ *
+ * <p>The row starts as the instance read from the stream. Its dense values
+ * are only copied out of the instance when a filter asks for them, so that a
+ * filter reading sparse instances (e.g. HashingTrickFilter) can use the
+ * instance directly. A filter can also replace the values with dense or
+ * sparse ones, of another number of attributes.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class FilterRow {
+
+    protected Instance instance;
+
+    protected double[] values;
+
+    // Indices of the values, null for dense values
+    protected int[] indices;
+
+    protected int numAttributes;
+
+    protected double weight;
+
+    /**
+     * Makes the instance the content of the row. The instance is not
+     * modified.
+     */
+    public void setInstance(Instance instance) {
+        this.instance = instance;
+        this.values = null;
+        this.indices = null;
+        this.numAttributes = instance.numAttributes();
+        this.weight = instance.weight();
+    }
+
+    /**
+     * Returns the instance of the row, or null once its values were copied or
+     * replaced.
+     */
+    public Instance getInstance() {
+        return this.instance;
+    }
+
+    /**
+     * Returns the dense values of the row, to be read or modified in place.
+     */
+    public double[] getValues() {
+        if (this.instance != null) {
+            this.values = this.instance.toDoubleArray();
+            this.instance = null;
+        } else if (this.indices != null) {
+            double[] dense = new double[this.numAttributes];
+            for (int k = 0; k < this.indices.length; k++) {
+                dense[this.indices[k]] = this.values[k];
+            }
+            this.values = dense;
+            this.indices = null;
+        }
+        return this.values;
+    }
+
+    public void setValues(double[] values) {
+        this.instance = null;
+        this.values = values;
+        this.indices = null;
+        this.numAttributes = values.length;
+    }
+
+    public void setSparseValues(double[] values, int[] indices, int numAttributes) {
+        this.instance = null;
+        this.values = values;
+        this.indices = indices;
+        this.numAttributes = numAttributes;
+    }
+
+    public int numAttributes() {
+        return this.numAttributes;
+    }
+
+    public double getWeight() {
+        return this.weight;
+    }
+
+    public void setWeight(double weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * Creates the instance of the values of the row, which must no longer be
+     * used afterwards.
+     */
+    public Instance toInstance(InstancesHeader header) {
+        if (this.indices != null) {
+            return HeaderBoundInstances.newSparse(this.weight, this.values,
+                    this.indices, this.numAttributes, header);
+        }
+        return HeaderBoundInstances.newDense(this.weight, getValues(), header);
+    }
+}
@@ -1,13 +1,13 @@
-
-
 package moa.streams.filters;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
+import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
 import com.yahoo.labs.samoa.instances.Attribute;
-import com.yahoo.labs.samoa.instances.DenseInstance;
 import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
+import java.util.Arrays;
 import moa.core.FastVector;
 import moa.core.InstanceExample;
 import moa.streams.InstanceStream;
@@ -17,20 +17,38 @@ import moa.streams.InstanceStream;
  *    a hash function to the features and using their hash values as indices directly,
  *    rather than looking the indices up in an associative array.
  *
+ *    The bucket and the sign of every input attribute are computed once from the
+ *    header of the input stream, and only the non-zero values of the instances
+ *    are visited.
+ *
  * @author Maroua Bahri
  */
 
-public class HashingTrickFilter extends AbstractStreamFilter {
+public class HashingTrickFilter extends AbstractStreamFilter implements
+        RowTransformFilter {
 
     private static final long serialVersionUID = 1L;
 
     public IntOption dim = new IntOption("FeatureDimension", 'd',
             "the target feature dimension.", 10);
 
+    public FlagOption sparseOutputOption = new FlagOption("sparseOutput", 's',
+            "Output sparse instances (only the non-zero buckets), for large dimensions.");
+
     protected InstancesHeader streamHeader;
 
     protected FastVector attributes;
 
+    // Class index of the input, and bucket and sign of every input attribute
+    protected int inputClassIndex;
+
+    protected int[] buckets;
+
+    protected double[] signs;
+
+    // Buffer of the hashed values
+    protected double[] hashValues;
+
     @Override
     protected void restartImpl() {
         this.streamHeader = null;
@@ -38,6 +56,10 @@ public class HashingTrickFilter extends AbstractStreamFilter {
 
     @Override
     public InstancesHeader getHeader() {
+        if (this.streamHeader == null && this.inputStream != null
+                && this.inputStream.getHeader() != null) {
+            initialize(this.inputStream.getHeader());
+        }
         return this.streamHeader;
     }
 
@@ -47,39 +69,103 @@ public class HashingTrickFilter extends AbstractStreamFilter {
         Instance sparseInstance = (Instance) this.inputStream.nextInstance().getData();
 
         if (streamHeader == null) {
-            //Create a new header
-            this.attributes = new FastVector();
-            for (int i = 0; i < this.dim.getValue(); i++) {
-                this.attributes.addElement(new Attribute("numeric" + (i + 1)));
-            }
-            this.attributes.addElement(sparseInstance.classAttribute());
-            this.streamHeader = new InstancesHeader(new Instances(
-                    getCLICreationString(InstanceStream.class), this.attributes, 0));
-            this.streamHeader.setClassIndex(this.streamHeader.numAttributes() - 1);
+            initialize(sparseInstance.dataset());
         }
 
-
-        double [] hashVal = hashVector(sparseInstance,this.dim.getValue(), Hashing.murmur3_128());
-       // System.out.println(transformedInstance(sparseInstance, hashVal));
-
-        return new InstanceExample(transformedInstance(sparseInstance, hashVal));
+        return new InstanceExample(transformedInstance(sparseInstance, hashVector(sparseInstance)));
     }
 
+    /**
+     * Creates the header of the output and the hashing tables of the input
+     * attributes. As before, the class is expected to be the last attribute
+     * of the input.
+     */
+    protected void initialize(Instances inputHeader) {
+        int n = this.dim.getValue();
+        this.attributes = new FastVector();
+        for (int i = 0; i < n; i++) {
+            this.attributes.addElement(newAttribute(i));
+        }
+        this.attributes.addElement(inputHeader.classAttribute());
+        this.streamHeader = new InstancesHeader(new Instances(
+                getCLICreationString(InstanceStream.class), this.attributes, 0));
+        this.streamHeader.setClassIndex(this.streamHeader.numAttributes() - 1);
+
+        HashFunction hashFunction = Hashing.murmur3_128();
+        int numInputAttributes = inputHeader.numAttributes() - 1;
+        this.inputClassIndex = inputHeader.numAttributes() - 1;
+        this.buckets = new int[numInputAttributes];
+        this.signs = new double[numInputAttributes];
+        for (int i = 0; i < numInputAttributes; i++) {
+            int hash = hashFunction.hashInt(i).asInt();
+            int bucket = Math.abs(hash) % n;
+            this.buckets[i] = bucket < 0 ? bucket + n : bucket;
+            this.signs[i] = hash < 0 ? -1d : 1d;
+        }
+        this.hashValues = new double[n];
+    }
 
+    protected Attribute newAttribute(int i) {
+        return new Attribute("numeric" + (i + 1));
+    }
 
-    public DenseInstance transformedInstance(Instance sparseInst, double [] hashVal) {
+    public Instance transformedInstance(Instance sparseInst, double [] hashVal) {
+        FilterRow row = new FilterRow();
+        setHashedValues(row, hashVal, sparseInst.classValue());
+        return row.toInstance(this.streamHeader);
+    }
 
-        Instances header = this.streamHeader;
-        double[] attributeValues = new double[header.numAttributes()];
+    @Override
+    public InstancesHeader prepareRowTransform(InstancesHeader inputHeader) {
+        if (this.streamHeader == null) {
+            initialize(inputHeader);
+        }
+        return this.streamHeader;
+    }
 
-        for(int i = 0 ; i < header.numAttributes()-1 ; i++) {
-            attributeValues[i] = hashVal[i];
+    @Override
+    public void transformRow(FilterRow row) {
+        Instance instance = row.getInstance();
+        if (instance != null) {
+            setHashedValues(row, hashVector(instance), instance.classValue());
+        } else {
+            double[] values = row.getValues();
+            setHashedValues(row, hashVector(values), values[this.inputClassIndex]);
         }
+    }
 
-        attributeValues[attributeValues.length-1] = sparseInst.classValue();
-        DenseInstance newInstance = new DenseInstance(1.0, attributeValues);
-        newInstance.setDataset(header);
-        return newInstance;
+    /**
+     * Sets the hashed values and the class value as the values of the row,
+     * with weight 1.
+     */
+    protected void setHashedValues(FilterRow row, double[] hashVal, double classValue) {
+        int n = hashVal.length;
+        row.setWeight(1.0);
+        if (this.sparseOutputOption.isSet()) {
+            int numValues = 0;
+            for (int i = 0; i < n; i++) {
+                if (hashVal[i] != 0d) {
+                    numValues++;
+                }
+            }
+            int[] indices = new int[numValues + 1];
+            double[] values = new double[numValues + 1];
+            numValues = 0;
+            for (int i = 0; i < n; i++) {
+                if (hashVal[i] != 0d) {
+                    indices[numValues] = i;
+                    values[numValues] = hashVal[i];
+                    numValues++;
+                }
+            }
+            indices[numValues] = n;
+            values[numValues] = classValue;
+            row.setSparseValues(values, indices, n + 1);
+        } else {
+            double[] attributeValues = Arrays.copyOf(hashVal, n + 1);
+            attributeValues[n] = classValue;
+            row.setValues(attributeValues);
+        }
     }
 
     @Override
@@ -87,25 +173,42 @@ public class HashingTrickFilter extends AbstractStreamFilter {
         // TODO Auto-generated method stub
     }
 
-
-    public  double[] hashVector(Instance instance, int n,
-                                com.google.common.hash.HashFunction hashFunction) {
-
-        double [] denseValues = new double [n];
-        for (int i = 0 ; i < n ; i++) {
-            denseValues[i] = 0d;
-        }
-        for (int i = 0; i < instance.numAttributes()-1 ; i++){
-                double diff = Math.abs(instance.value(i));
-                if( diff  > Double.MIN_NORMAL) {
-                    int  hash = hashFunction.hashInt(i).asInt();
-                    int bucket = Math.abs(hash) % n;
-                    denseValues[bucket] += (hash < 0 ? -1d : 1d);
+    /**
+     * Hashes the non-zero values of the instance into the buffer of hashed
+     * values, which is returned.
+     */
+    public double[] hashVector(Instance instance) {
+        double[] denseValues = this.hashValues;
+        Arrays.fill(denseValues, 0d);
+        for (int k = 0; k < instance.numValues(); k++) {
+            int i = instance.index(k);
+            if (i < this.inputClassIndex) {
+                double diff = Math.abs(instance.valueSparse(k));
+                if (diff > Double.MIN_NORMAL) {
+                    addToBucket(denseValues, i);
                 }
             }
-        
+        }
         return denseValues;
     }
 
+    /**
+     * Hashes the non-zero values of a dense row into the buffer of hashed
+     * values, which is returned.
+     */
+    public double[] hashVector(double[] values) {
+        double[] denseValues = this.hashValues;
+        Arrays.fill(denseValues, 0d);
+        for (int i = 0; i < this.inputClassIndex; i++) {
+            if (Math.abs(values[i]) > Double.MIN_NORMAL) {
+                addToBucket(denseValues, i);
+            }
+        }
+        return denseValues;
+    }
+
+    protected void addToBucket(double[] denseValues, int i) {
+        denseValues[this.buckets[i]] += this.signs[i];
+    }
 
-}
\ No newline at end of file
+}
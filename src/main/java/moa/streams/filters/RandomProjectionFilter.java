@@ -0,0 +1,192 @@
+package moa.streams.filters;
+
+import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import java.util.Arrays;
+import java.util.Random;
+import moa.core.FastVector;
+import moa.core.HeaderBoundInstances;
+import moa.core.InstanceExample;
+import moa.streams.InstanceStream;
+
+/**
+ * Filter projecting the instances into d dimensions with a random matrix.
+ *
+ * With -s 1 the entries of the matrix are Gaussian, as in the compressed sensing
+ * classifiers. With -s greater than 1 the matrix is the sparse random projection
+ * of Achlioptas / Li et al.: entries are sqrt(s) times +1 or -1 with probability
+ * 1/(2s) each, and 0 otherwise; -s 0 uses s = sqrt(number of attributes). The
+ * non-zero entries of every input attribute are stored contiguously, and only
+ * the non-zero values of the instances are visited. The class is expected to be
+ * the last attribute.
+ *
+ * @version $Revision: 1 $
+ */
+public class RandomProjectionFilter extends AbstractStreamFilter implements
+		RowTransformFilter {
+
+	private static final long serialVersionUID = 1L;
+
+	public IntOption dim = new IntOption("FeatureDimension", 'd',
+			"the target feature dimension.", 10, 1, Integer.MAX_VALUE);
+
+	public IntOption sparsityOption = new IntOption("sparsity", 's',
+			"1 for a Gaussian matrix, s > 1 for a sparse matrix of density 1/s, 0 for s = sqrt(number of attributes).",
+			1, 0, Integer.MAX_VALUE);
+
+	public IntOption randomSeedOption = new IntOption("randomSeed", 'r',
+			"Seed for the random matrix.", 1);
+
+	protected InstancesHeader streamHeader;
+
+	protected int inputClassIndex;
+
+	// Non-zero entries of input attribute j at [columnStarts[j], columnStarts[j + 1])
+	protected int[] columnStarts;
+
+	protected int[] rows;
+
+	protected double[] entries;
+
+	@Override
+	public String getPurposeString() {
+		return "Projects the instances with a Gaussian or sparse random matrix.";
+	}
+
+	@Override
+	protected void restartImpl() {
+		this.streamHeader = null;
+	}
+
+	@Override
+	public InstancesHeader getHeader() {
+		if (this.streamHeader == null && this.inputStream != null
+				&& this.inputStream.getHeader() != null) {
+			initialize(this.inputStream.getHeader());
+		}
+		return this.streamHeader;
+	}
+
+	@Override
+	public InstanceExample nextInstance() {
+		Instance x = (Instance) this.inputStream.nextInstance().getData();
+		if (this.streamHeader == null) {
+			initialize(x.dataset());
+		}
+		return new InstanceExample(filterInstance(x));
+	}
+
+	@Override
+	public Instance filterInstance(Instance x) {
+		return HeaderBoundInstances.newDense(x.weight(), project(x), this.streamHeader);
+	}
+
+	@Override
+	public InstancesHeader prepareRowTransform(InstancesHeader inputHeader) {
+		if (this.streamHeader == null) {
+			initialize(inputHeader);
+		}
+		return this.streamHeader;
+	}
+
+	@Override
+	public void transformRow(FilterRow row) {
+		Instance x = row.getInstance();
+		row.setValues(x != null ? project(x) : project(row.getValues()));
+	}
+
+	/**
+	 * Projects the non-zero values of the instance, followed by its class
+	 * value.
+	 */
+	protected double[] project(Instance x) {
+		int d = this.dim.getValue();
+		double[] z = new double[d + 1];
+		for (int k = 0; k < x.numValues(); k++) {
+			int j = x.index(k);
+			if (j >= this.inputClassIndex || x.isMissingSparse(k)) {
+				continue;
+			}
+			addColumn(z, j, x.valueSparse(k));
+		}
+		z[d] = x.classValue();
+		return z;
+	}
+
+	protected double[] project(double[] x) {
+		int d = this.dim.getValue();
+		double[] z = new double[d + 1];
+		for (int j = 0; j < this.inputClassIndex; j++) {
+			if (!Double.isNaN(x[j])) {
+				addColumn(z, j, x[j]);
+			}
+		}
+		z[d] = x[this.inputClassIndex];
+		return z;
+	}
+
+	private void addColumn(double[] z, int j, double value) {
+		if (value != 0.0) {
+			for (int e = this.columnStarts[j]; e < this.columnStarts[j + 1]; e++) {
+				z[this.rows[e]] += value * this.entries[e];
+			}
+		}
+	}
+
+	protected void initialize(Instances inputHeader) {
+		int d = this.dim.getValue();
+		FastVector attributes = new FastVector();
+		for (int i = 0; i < d; i++) {
+			attributes.addElement(new Attribute("projected" + (i + 1)));
+		}
+		attributes.addElement(inputHeader.classAttribute());
+		this.streamHeader = new InstancesHeader(new Instances(
+				getCLICreationString(InstanceStream.class), attributes, 0));
+		this.streamHeader.setClassIndex(this.streamHeader.numAttributes() - 1);
+
+		this.inputClassIndex = inputHeader.numAttributes() - 1;
+		int numInputs = this.inputClassIndex;
+		double s = this.sparsityOption.getValue();
+		if (s == 0) {
+			s = Math.max(1.0, Math.sqrt(numInputs));
+		}
+		double scale = Math.sqrt(s);
+		Random random = new Random(this.randomSeedOption.getValue());
+		this.columnStarts = new int[numInputs + 1];
+		int[] rows = new int[16];
+		double[] entries = new double[16];
+		int numEntries = 0;
+		for (int j = 0; j < numInputs; j++) {
+			this.columnStarts[j] = numEntries;
+			for (int i = 0; i < d; i++) {
+				double entry;
+				if (s == 1) {
+					entry = random.nextGaussian();
+				} else {
+					double u = random.nextDouble() * s;
+					entry = u < 0.5 ? scale : (u < 1.0 ? -scale : 0.0);
+				}
+				if (entry != 0.0) {
+					if (numEntries == rows.length) {
+						rows = Arrays.copyOf(rows, 2 * numEntries);
+						entries = Arrays.copyOf(entries, 2 * numEntries);
+					}
+					rows[numEntries] = i;
+					entries[numEntries] = entry;
+					numEntries++;
+				}
+			}
+		}
+		this.columnStarts[numInputs] = numEntries;
+		this.rows = Arrays.copyOf(rows, numEntries);
+		this.entries = Arrays.copyOf(entries, numEntries);
+	}
+
+	@Override
+	public void getDescription(StringBuilder sb, int indent) {
+		// TODO Auto-generated method stub
+	}
+}
@@ -36,7 +36,8 @@ import moa.core.FastVector;
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
-public class RemoveDiscreteAttributeFilter extends AbstractStreamFilter {
+public class RemoveDiscreteAttributeFilter extends AbstractStreamFilter implements
+        RowTransformFilter {
 
     @Override
     public String getPurposeString() {
@@ -63,21 +64,7 @@ public class RemoveDiscreteAttributeFilter extends AbstractStreamFilter {
         Instance inst = (Instance) this.inputStream.nextInstance().getData();
 
         if (streamHeader == null) {
-            //Create a new header
-            FastVector attributes = new FastVector();
-            numericAttributes = new ArrayList<Integer>();
-            for (int i = 0; i < inst.numAttributes(); i++) {
-                if (inst.attribute(i).isNumeric()) {
-                    numericAttributes.add(i);
-                    attributes.addElement(inst.attribute(i));
-                }
-            }
-            attributes.addElement(inst.classAttribute());
-            numericAttributes.add(inst.classIndex());
-            this.streamHeader = new InstancesHeader(new Instances(
-                    getCLICreationString(InstanceStream.class), attributes, 0));
-            this.streamHeader.setClassIndex(this.streamHeader.numAttributes() - 1);
-
+            initialize(inst.dataset());
         }
 
         //Create a new instance
@@ -93,11 +80,50 @@ public class RemoveDiscreteAttributeFilter extends AbstractStreamFilter {
         } else {
             instance = new DenseInstance(inst.weight(), vals);
         }
+        instance.setDataset(this.streamHeader);
 
 
         return new InstanceExample(instance);
     }
 
+    @Override
+    public InstancesHeader prepareRowTransform(InstancesHeader inputHeader) {
+        if (streamHeader == null) {
+            initialize(inputHeader);
+        }
+        return streamHeader;
+    }
+
+    @Override
+    public void transformRow(FilterRow row) {
+        // the values are read from the instance itself if it was not copied yet
+        Instance inst = row.getInstance();
+        double[] values = inst == null ? row.getValues() : null;
+        double[] vals = new double[numericAttributes.size()];
+        for (int i = 0; i < vals.length; i++) {
+            int index = numericAttributes.get(i);
+            vals[i] = inst != null ? inst.value(index) : values[index];
+        }
+        row.setValues(vals);
+    }
+
+    protected void initialize(Instances inputHeader) {
+        //Create a new header
+        FastVector attributes = new FastVector();
+        numericAttributes = new ArrayList<Integer>();
+        for (int i = 0; i < inputHeader.numAttributes(); i++) {
+            if (inputHeader.attribute(i).isNumeric()) {
+                numericAttributes.add(i);
+                attributes.addElement(inputHeader.attribute(i));
+            }
+        }
+        attributes.addElement(inputHeader.classAttribute());
+        numericAttributes.add(inputHeader.classIndex());
+        this.streamHeader = new InstancesHeader(new Instances(
+                getCLICreationString(InstanceStream.class), attributes, 0));
+        this.streamHeader.setClassIndex(this.streamHeader.numAttributes() - 1);
+    }
+
     @Override
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
@@ -22,6 +22,7 @@ package moa.streams.filters;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.MultiChoiceOption;
 import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
 import java.util.Collections;
 import java.util.Comparator;
@@ -55,7 +56,8 @@ import moa.core.InstanceExample;
  * @author Manuel Martin Salvador <draxus@gmail.com>
  * 
  */
-public class ReplacingMissingValuesFilter extends AbstractStreamFilter {
+public class ReplacingMissingValuesFilter extends AbstractStreamFilter implements
+		RowTransformFilter {
 
 
 	private static final long serialVersionUID = 1470772215201414815L;
@@ -92,6 +94,8 @@ public class ReplacingMissingValuesFilter extends AbstractStreamFilter {
 	
 	protected HashMap<Double, Integer> frequencies[] = null;
 	
+	protected InstancesHeader rowHeader;
+	
 	protected int numericalSelectedStrategy = 0;
 	protected int nominalSelectedStrategy = 0;
 	
@@ -111,31 +115,63 @@ public class ReplacingMissingValuesFilter extends AbstractStreamFilter {
  		
 		// Initialization
 		if (numAttributes < 0){
-			numAttributes = inst.numAttributes();
-			columnsStatistics = new double[numAttributes];
-			numberOfSamples = new long[numAttributes];
-			lastNominalValues = new double[numAttributes];
-                        for(int i=0;i <numAttributes;i++){
-                            lastNominalValues[i]=-1;
-                        }
-			frequencies = new HashMap[numAttributes];
-			for(int i=0; i< inst.numAttributes(); i++){
-				if(inst.attribute(i).isNominal())
-					frequencies[i] = new HashMap<Double, Integer>();
-			}
-			
-			numericalSelectedStrategy = this.numericReplacementStrategyOption.getChosenIndex();
-			nominalSelectedStrategy = this.nominalReplacementStrategyOption.getChosenIndex();
+			initialize(inst.dataset());
 		}
 		
+		double[] values = inst.toDoubleArray();
+		replaceMissingValues(values, inst.dataset());
+		for (int i = 0; i < numAttributes; i++) {
+			if (inst.isMissing(i) && !Double.isNaN(values[i])) {
+				inst.setValue(i, values[i]);
+			}
+		}
 		
+        return new InstanceExample(inst);
+    }
+
+	@Override
+	public InstancesHeader prepareRowTransform(InstancesHeader inputHeader) {
+		if (numAttributes < 0){
+			initialize(inputHeader);
+		}
+		this.rowHeader = inputHeader;
+		return inputHeader;
+	}
+
+	@Override
+	public void transformRow(FilterRow row) {
+		replaceMissingValues(row.getValues(), this.rowHeader);
+	}
+
+	protected void initialize(Instances header) {
+		numAttributes = header.numAttributes();
+		columnsStatistics = new double[numAttributes];
+		numberOfSamples = new long[numAttributes];
+		lastNominalValues = new double[numAttributes];
+                for(int i=0;i <numAttributes;i++){
+                    lastNominalValues[i]=-1;
+                }
+		frequencies = new HashMap[numAttributes];
+		for(int i=0; i< numAttributes; i++){
+			if(header.attribute(i).isNominal())
+				frequencies[i] = new HashMap<Double, Integer>();
+		}
 		
+		numericalSelectedStrategy = this.numericReplacementStrategyOption.getChosenIndex();
+		nominalSelectedStrategy = this.nominalReplacementStrategyOption.getChosenIndex();
+	}
+
+	/**
+	 * Replaces the missing values of the row, and updates the statistics with
+	 * the other values.
+	 */
+	protected void replaceMissingValues(double[] values, Instances header) {
 		for (int i = 0; i < numAttributes; i++) {
 			
 			// ---- Numerical values ----
-			if (inst.attribute(i).isNumeric()) {
+			if (header.attribute(i).isNumeric()) {
 				// Handle missing value
-				if (inst.isMissing(i)) {
+				if (Double.isNaN(values[i])) {
 					switch(numericalSelectedStrategy){
 					case 0: // NOTHING
 						break;
@@ -143,10 +179,10 @@ public class ReplacingMissingValuesFilter extends AbstractStreamFilter {
 					case 2: // MEAN
 					case 3: // MAX
 					case 4: // MIN
-						inst.setValue(i, columnsStatistics[i]);
+						values[i] = columnsStatistics[i];
 						break;
 					case 5: // CONSTANT
-						inst.setValue(i, numericalConstantValueOption.getValue());
+						values[i] = numericalConstantValueOption.getValue();
 						break;
 					default: continue;
 					}
@@ -155,39 +191,39 @@ public class ReplacingMissingValuesFilter extends AbstractStreamFilter {
 				else{
 					switch(numericalSelectedStrategy){
 					case 1: // LAST KNOWN VALUE
-						columnsStatistics[i] = inst.value(i);
+						columnsStatistics[i] = values[i];
 						break;
 					case 2: // MEAN
 						numberOfSamples[i]++;
-						columnsStatistics[i] = columnsStatistics[i] + (inst.value(i) - columnsStatistics[i])/numberOfSamples[i];
+						columnsStatistics[i] = columnsStatistics[i] + (values[i] - columnsStatistics[i])/numberOfSamples[i];
 						break;
 					case 3: // MAX
-						columnsStatistics[i] = columnsStatistics[i] < inst.value(i) ? inst.value(i) : columnsStatistics[i];
+						columnsStatistics[i] = columnsStatistics[i] < values[i] ? values[i] : columnsStatistics[i];
 						break;
 					case 4: // MIN
-						columnsStatistics[i] = columnsStatistics[i] > inst.value(i) ? inst.value(i) : columnsStatistics[i];
+						columnsStatistics[i] = columnsStatistics[i] > values[i] ? values[i] : columnsStatistics[i];
 						break;
 					default: continue;
 					}
 				}
 			}
 			// ---- Nominal values ----
-			else if(inst.attribute(i).isNominal()){
+			else if(header.attribute(i).isNominal()){
 				// Handle missing value
-				if (inst.isMissing(i)) {
+				if (Double.isNaN(values[i])) {
 					switch(nominalSelectedStrategy){
 					case 0: // NOTHING
 						break;
 					case 1: // LAST KNOWN VALUE
 						if(lastNominalValues[i] != -1){ //null){
-							inst.setValue(i, lastNominalValues[i]);
+							values[i] = lastNominalValues[i];
 						}
 						break;
 					case 2: // MODE
 						if(!frequencies[i].isEmpty()){
 							// Sort the map to get the most frequent value
 							Map<Double, Integer> sortedMap = MapUtil.sortByValue( frequencies[i] );
-							inst.setValue(i, sortedMap.entrySet().iterator().next().getKey());
+							values[i] = sortedMap.entrySet().iterator().next().getKey();
 						}
 						break;
 					default: continue;
@@ -197,21 +233,19 @@ public class ReplacingMissingValuesFilter extends AbstractStreamFilter {
 				else{
 					switch(nominalSelectedStrategy){
 					case 1: // LAST KNOWN VALUE
-						lastNominalValues[i] = inst.value(i);
+						lastNominalValues[i] = values[i];
 						break;
 					case 2: // MODE
-						Integer previousCounter = frequencies[i].get(inst.value(i));
+						Integer previousCounter = frequencies[i].get(values[i]);
 						if(previousCounter == null) previousCounter = 0;
-						frequencies[i].put(inst.value(i), ++previousCounter);
+						frequencies[i].put(values[i], ++previousCounter);
 						break;
 					default: continue;
 					}
 				}
 			}
 		}
-		
-        return new InstanceExample(inst);
-    }
+	}
 
 	@Override
 	public void getDescription(StringBuilder sb, int indent) {
@@ -0,0 +1,53 @@
+/*
+ *    RowTransformFilter.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams.filters;
+
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+/**
+ * Stream filter that can also transform the values of a row directly.
+ *
+ * <p>MultiFilteredStream runs consecutive filters implementing this interface
+ * as one pass over a shared {@link FilterRow}: the row is loaded once from
+ * the instance of the stream, every filter transforms it, and a single
+ * instance is created at the end, instead of one copy of the instance per
+ * filter. The filters are still chained with <code>setInputStream</code>, and
+ * restarted through the chain.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public interface RowTransformFilter extends StreamFilter {
+
+    /**
+     * Prepares the filter for the rows of instances with the given header,
+     * and returns the header of the transformed rows.
+     *
+     * @param inputHeader the header of the rows to transform
+     * @return the header of the transformed rows
+     */
+    public InstancesHeader prepareRowTransform(InstancesHeader inputHeader);
+
+    /**
+     * Transforms the row, in place or by replacing its values. The arrays of
+     * the row belong to it once set: they must not be kept or reused by the
+     * filter.
+     *
+     * @param row the row to transform
+     */
+    public void transformRow(FilterRow row);
+}
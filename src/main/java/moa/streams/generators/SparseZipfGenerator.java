@@ -0,0 +1,354 @@
+/*
+ *    SparseZipfGenerator.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams.generators;
+
+import com.github.javacliparser.FlagOption;
+import com.github.javacliparser.FloatOption;
+import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import java.util.Arrays;
+import java.util.Random;
+import moa.core.FastVector;
+import moa.core.HeaderBoundInstances;
+import moa.core.InstanceExample;
+import moa.core.ObjectRepository;
+import moa.options.AbstractOptionHandler;
+import moa.streams.InstanceStream;
+import moa.tasks.TaskMonitor;
+
+/**
+ * Stream generator for sparse, high-dimensional instances, such as bag of
+ * words vectors of texts.
+ *
+ * <p>About <code>-z</code> features are drawn for every instance (fewer are
+ * non-zero, as popular features are drawn several times). Most of them are
+ * drawn with a Zipf distribution over the popularity of the features, the
+ * others from the signature of the class of the instance: a set of features
+ * specific to the class. Every <code>-k</code> instances, a fraction of every
+ * signature is replaced by other features, which drifts the concepts. The
+ * instances are created directly as sparse instances, the values being the
+ * number of occurrences of the features (or 1 with <code>-b</code>).</p>
+ *
+ * <p>The Zipf distribution is sampled by rejection-inversion (W. Hormann and
+ * G. Derflinger, Rejection-inversion to generate variates from monotone
+ * discrete distributions, 1996), in constant time and without table, so that
+ * millions of attributes can be generated.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class SparseZipfGenerator extends AbstractOptionHandler implements
+        InstanceStream {
+
+    @Override
+    public String getPurposeString() {
+        return "Generates sparse high-dimensional instances with Zipfian features, class signatures and drift.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public IntOption modelRandomSeedOption = new IntOption("modelRandomSeed",
+            'r', "Seed for random generation of the popularity of the features and the signatures.", 1);
+
+    public IntOption instanceRandomSeedOption = new IntOption(
+            "instanceRandomSeed", 'i',
+            "Seed for random generation of instances.", 1);
+
+    public IntOption numClassesOption = new IntOption("numClasses", 'c',
+            "The number of classes to generate.", 2, 2, Integer.MAX_VALUE);
+
+    public IntOption numAttsOption = new IntOption("numAtts", 'a',
+            "The number of attributes to generate.", 100000, 1, Integer.MAX_VALUE - 1);
+
+    public IntOption numNonZerosOption = new IntOption("numNonZeros", 'z',
+            "The average number of features drawn for every instance.", 50, 1, Integer.MAX_VALUE / 2);
+
+    public FloatOption zipfExponentOption = new FloatOption("zipfExponent", 'e',
+            "The exponent of the Zipf distribution of the popularity of the features.",
+            1.1, 0.0, Double.MAX_VALUE);
+
+    public IntOption signatureSizeOption = new IntOption("signatureSize", 'g',
+            "The number of features in the signature of every class.", 100, 1, Integer.MAX_VALUE);
+
+    public FloatOption signatureFractionOption = new FloatOption("signatureFraction", 'p',
+            "The fraction of the features of an instance drawn from the signature of its class.",
+            0.2, 0.0, 1.0);
+
+    public IntOption driftIntervalOption = new IntOption("driftInterval", 'k',
+            "The number of instances between drifts of the signatures, 0 for no drift.",
+            0, 0, Integer.MAX_VALUE);
+
+    public FloatOption driftFractionOption = new FloatOption("driftFraction", 'f',
+            "The fraction of the features of every signature replaced at each drift.",
+            0.1, 0.0, 1.0);
+
+    public IntOption noisePercentageOption = new IntOption("noisePercentage",
+            'n', "Percentage of noise to add to the data.", 0, 0, 100);
+
+    public FlagOption binaryOption = new FlagOption("binary", 'b',
+            "Use 1 as the value of the features drawn, instead of their number of occurrences.");
+
+    protected InstancesHeader streamHeader;
+
+    protected Random instanceRandom;
+
+    // Feature of every popularity rank
+    protected int[] featureOfRank;
+
+    // Signatures before any drift, and as drifted since the last restart
+    protected int[][] initialSignatures;
+
+    protected int[][] signatures;
+
+    protected long numInstances;
+
+    // Buffer of the features drawn for an instance
+    protected int[] features;
+
+    // Constants of the rejection-inversion sampling
+    protected double zipfExponent;
+
+    protected double hIntegralX1;
+
+    protected double hIntegralN;
+
+    protected double s;
+
+    @Override
+    protected void prepareForUseImpl(TaskMonitor monitor,
+            ObjectRepository repository) {
+        monitor.setCurrentActivity("Preparing sparse generator...", -1.0);
+        generateHeader();
+        generateModel();
+        restart();
+    }
+
+    protected void generateHeader() {
+        FastVector attributes = new FastVector();
+        for (int i = 0; i < this.numAttsOption.getValue(); i++) {
+            attributes.addElement(new Attribute("att" + (i + 1)));
+        }
+
+        FastVector classLabels = new FastVector();
+        for (int i = 0; i < this.numClassesOption.getValue(); i++) {
+            classLabels.addElement("class" + (i + 1));
+        }
+        attributes.addElement(new Attribute("class", classLabels));
+        this.streamHeader = new InstancesHeader(new Instances(
+                getCLICreationString(InstanceStream.class), attributes, 0));
+        this.streamHeader.setClassIndex(this.streamHeader.numAttributes() - 1);
+    }
+
+    @Override
+    public long estimatedRemainingInstances() {
+        return -1;
+    }
+
+    @Override
+    public InstancesHeader getHeader() {
+        return this.streamHeader;
+    }
+
+    @Override
+    public boolean hasMoreInstances() {
+        return true;
+    }
+
+    @Override
+    public boolean isRestartable() {
+        return true;
+    }
+
+    @Override
+    public InstanceExample nextInstance() {
+        int numAtts = this.numAttsOption.getValue();
+        int numClasses = this.numClassesOption.getValue();
+        int classLabel = this.instanceRandom.nextInt(numClasses);
+        int[] signature = this.signatures[classLabel];
+        double signatureFraction = this.signatureFractionOption.getValue();
+
+        // between 1 and 2 * z - 1 features, z on average
+        int length = 1 + this.instanceRandom.nextInt(2 * this.numNonZerosOption.getValue() - 1);
+        int[] drawn = this.features;
+        for (int j = 0; j < length; j++) {
+            if (this.instanceRandom.nextDouble() < signatureFraction) {
+                drawn[j] = signature[this.instanceRandom.nextInt(signature.length)];
+            } else {
+                drawn[j] = this.featureOfRank[sampleRank() - 1];
+            }
+        }
+        Arrays.sort(drawn, 0, length);
+
+        // distinct features, followed by the class
+        int numValues = 1;
+        for (int j = 1; j < length; j++) {
+            if (drawn[j] != drawn[j - 1]) {
+                numValues++;
+            }
+        }
+        int[] indices = new int[numValues + 1];
+        double[] values = new double[numValues + 1];
+        boolean binary = this.binaryOption.isSet();
+        int k = -1;
+        for (int j = 0; j < length; j++) {
+            if (k < 0 || drawn[j] != indices[k]) {
+                k++;
+                indices[k] = drawn[j];
+                values[k] = 1.0;
+            } else if (!binary) {
+                values[k]++;
+            }
+        }
+
+        //Add Noise
+        if ((1 + (this.instanceRandom.nextInt(100))) <= this.noisePercentageOption.getValue()) {
+            classLabel = (classLabel + 1 + this.instanceRandom.nextInt(numClasses - 1)) % numClasses;
+        }
+        indices[numValues] = numAtts;
+        values[numValues] = classLabel;
+
+        Instance inst = HeaderBoundInstances.newSparse(1.0, values, indices,
+                numAtts + 1, this.streamHeader);
+        this.numInstances++;
+        int driftInterval = this.driftIntervalOption.getValue();
+        if (driftInterval > 0 && this.numInstances % driftInterval == 0) {
+            addDrift();
+        }
+        return new InstanceExample(inst);
+    }
+
+    /**
+     * Replaces a fraction of the features of every signature by random
+     * features.
+     */
+    protected void addDrift() {
+        int numAtts = this.numAttsOption.getValue();
+        for (int[] signature : this.signatures) {
+            int numReplaced = (int) Math.round(signature.length * this.driftFractionOption.getValue());
+            for (int j = 0; j < numReplaced; j++) {
+                signature[this.instanceRandom.nextInt(signature.length)] =
+                        this.instanceRandom.nextInt(numAtts);
+            }
+        }
+    }
+
+    /**
+     * Draws the features of every popularity rank and the signatures of the
+     * classes from the model seed.
+     */
+    protected void generateModel() {
+        Random modelRandom = new Random(this.modelRandomSeedOption.getValue());
+        int numAtts = this.numAttsOption.getValue();
+        this.featureOfRank = new int[numAtts];
+        for (int i = 0; i < numAtts; i++) {
+            this.featureOfRank[i] = i;
+        }
+        for (int i = numAtts - 1; i > 0; i--) {
+            int j = modelRandom.nextInt(i + 1);
+            int feature = this.featureOfRank[i];
+            this.featureOfRank[i] = this.featureOfRank[j];
+            this.featureOfRank[j] = feature;
+        }
+        this.initialSignatures = new int[this.numClassesOption.getValue()][this.signatureSizeOption.getValue()];
+        for (int[] signature : this.initialSignatures) {
+            for (int j = 0; j < signature.length; j++) {
+                signature[j] = modelRandom.nextInt(numAtts);
+            }
+        }
+    }
+
+    @Override
+    public void restart() {
+        this.instanceRandom = new Random(this.instanceRandomSeedOption.getValue());
+        int numAtts = this.numAttsOption.getValue();
+        this.signatures = new int[this.initialSignatures.length][];
+        for (int i = 0; i < this.signatures.length; i++) {
+            this.signatures[i] = this.initialSignatures[i].clone();
+        }
+        this.features = new int[2 * this.numNonZerosOption.getValue()];
+        this.numInstances = 0;
+
+        this.zipfExponent = this.zipfExponentOption.getValue();
+        this.hIntegralX1 = hIntegral(1.5) - 1.0;
+        this.hIntegralN = hIntegral(numAtts + 0.5);
+        this.s = 2.0 - hIntegralInverse(hIntegral(2.5) - h(2.0));
+    }
+
+    /**
+     * Returns a rank between 1 and the number of attributes, with probability
+     * proportional to 1 / rank^exponent.
+     */
+    protected int sampleRank() {
+        int n = this.numAttsOption.getValue();
+        while (true) {
+            double u = this.hIntegralN + this.instanceRandom.nextDouble() * (this.hIntegralX1 - this.hIntegralN);
+            double x = hIntegralInverse(u);
+            int k = (int) (x + 0.5);
+            if (k < 1) {
+                k = 1;
+            } else if (k > n) {
+                k = n;
+            }
+            if (k - x <= this.s || u >= hIntegral(k + 0.5) - h(k)) {
+                return k;
+            }
+        }
+    }
+
+    // H(x), integral of h(x) = 1 / x^exponent
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return helper2((1.0 - this.zipfExponent) * logX) * logX;
+    }
+
+    private double h(double x) {
+        return Math.exp(-this.zipfExponent * Math.log(x));
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = x * (1.0 - this.zipfExponent);
+        if (t < -1.0) {
+            // limited by rounding errors
+            t = -1.0;
+        }
+        return Math.exp(helper1(t) * x);
+    }
+
+    // log(1 + x) / x, also for x close to 0
+    private static double helper1(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.log1p(x) / x;
+        }
+        return 1.0 - x * (0.5 - x * (1.0 / 3.0 - 0.25 * x));
+    }
+
+    // (exp(x) - 1) / x, also for x close to 0
+    private static double helper2(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.expm1(x) / x;
+        }
+        return 1.0 + x * 0.5 * (1.0 + x * 1.0 / 3.0 * (1.0 + 0.25 * x));
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        // TODO Auto-generated method stub
+    }
+}
@@ -20,15 +20,13 @@
 package moa.tasks;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.PrintStream;
 import com.github.javacliparser.FileOption;
 import com.github.javacliparser.IntOption;
 import moa.classifiers.Classifier;
 import moa.classifiers.MultiClassClassifier;
 import moa.core.Example;
 import moa.core.ObjectRepository;
-import moa.core.Utils;
+import moa.evaluation.PredictionSink;
 import moa.evaluation.LearningEvaluation;
 import moa.evaluation.LearningPerformanceEvaluator;
 import moa.learners.Learner;
@@ -98,20 +96,9 @@ public class EvaluateModel extends ClassificationMainTask {
 
         //File for output predictions
         File outputPredictionFile = this.outputPredictionFileOption.getFile();
-        PrintStream outputPredictionResultStream = null;
+        PredictionSink outputPredictionSink = null;
         if (outputPredictionFile != null) {
-            try {
-                if (outputPredictionFile.exists()) {
-                    outputPredictionResultStream = new PrintStream(
-                            new FileOutputStream(outputPredictionFile, true), true);
-                } else {
-                    outputPredictionResultStream = new PrintStream(
-                            new FileOutputStream(outputPredictionFile), true);
-                }
-            } catch (Exception ex) {
-                throw new RuntimeException(
-                        "Unable to open prediction result file: " + outputPredictionFile, ex);
-            }
+            outputPredictionSink = PredictionSink.open(outputPredictionFile);
         }
         while (stream.hasMoreInstances()
                 && ((maxInstances < 0) || (instancesProcessed < maxInstances))) {
@@ -121,14 +108,16 @@ public class EvaluateModel extends ClassificationMainTask {
             double[] prediction = model.getVotesForInstance(testInst);
             //evaluator.addClassificationAttempt(trueClass, prediction, testInst
             //		.weight());
-            if (outputPredictionFile != null) {
-                outputPredictionResultStream.println(Utils.maxIndex(prediction) + "," +(
-                        ((Instance) testInst.getData()).classIsMissing() == true ? " ? " : trueClass));
+            if (outputPredictionSink != null) {
+                outputPredictionSink.writeVotes(prediction, (Instance) testInst.getData());
             }
             evaluator.addResult(testInst, prediction);
             instancesProcessed++;
             if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
                 if (monitor.taskShouldAbort()) {
+                    if (outputPredictionSink != null) {
+                        outputPredictionSink.close();
+                    }
                     return null;
                 }
                 long estimatedRemainingInstances = stream.estimatedRemainingInstances();
@@ -148,8 +137,8 @@ public class EvaluateModel extends ClassificationMainTask {
                 }
             }
         }
-        if (outputPredictionResultStream != null) {
-            outputPredictionResultStream.close();
+        if (outputPredictionSink != null) {
+            outputPredictionSink.close();
         }
         return new LearningEvaluation(evaluator, model);
     }
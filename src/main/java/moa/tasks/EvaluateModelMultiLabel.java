@@ -20,8 +20,6 @@
 package moa.tasks;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.PrintStream;
 
 import com.github.javacliparser.FileOption;
 import com.github.javacliparser.IntOption;
@@ -33,6 +31,7 @@ import moa.classifiers.MultiLabelClassifier;
 import moa.classifiers.rules.multilabel.functions.MultiLabelNaiveBayes;
 import moa.core.Example;
 import moa.core.ObjectRepository;
+import moa.evaluation.PredictionSink;
 import moa.evaluation.LearningEvaluation;
 import moa.evaluation.LearningPerformanceEvaluator;
 import moa.evaluation.MultiTargetPerformanceEvaluator;
@@ -104,20 +103,9 @@ public class EvaluateModelMultiLabel extends MultiLabelMainTask {
 
         //File for output predictions
         File outputPredictionFile = this.outputPredictionFileOption.getFile();
-        PrintStream outputPredictionResultStream = null;
+        PredictionSink outputPredictionSink = null;
         if (outputPredictionFile != null) {
-            try {
-                if (outputPredictionFile.exists()) {
-                    outputPredictionResultStream = new PrintStream(
-                            new FileOutputStream(outputPredictionFile, true), true);
-                } else {
-                    outputPredictionResultStream = new PrintStream(
-                            new FileOutputStream(outputPredictionFile), true);
-                }
-            } catch (Exception ex) {
-                throw new RuntimeException(
-                        "Unable to open prediction result file: " + outputPredictionFile, ex);
-            }
+            outputPredictionSink = PredictionSink.open(outputPredictionFile);
         }
         while (stream.hasMoreInstances()
                 && ((maxInstances < 0) || (instancesProcessed < maxInstances))) {
@@ -127,13 +115,16 @@ public class EvaluateModelMultiLabel extends MultiLabelMainTask {
             double[] prediction = model.getVotesForInstance(testInst);
             //evaluator.addClassificationAttempt(trueClass, prediction, testInst
             //		.weight());
-            if (outputPredictionFile != null) {
-                outputPredictionResultStream.println(prediction[0] + "," + trueClass);
+            if (outputPredictionSink != null) {
+                outputPredictionSink.writeValue(prediction[0], trueClass);
             }
             evaluator.addResult(testInst, prediction);
             instancesProcessed++;
             if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
                 if (monitor.taskShouldAbort()) {
+                    if (outputPredictionSink != null) {
+                        outputPredictionSink.close();
+                    }
                     return null;
                 }
                 long estimatedRemainingInstances = stream.estimatedRemainingInstances();
@@ -153,8 +144,8 @@ public class EvaluateModelMultiLabel extends MultiLabelMainTask {
                 }
             }
         }
-        if (outputPredictionResultStream != null) {
-            outputPredictionResultStream.close();
+        if (outputPredictionSink != null) {
+            outputPredictionSink.close();
         }
         return new LearningEvaluation(evaluator, model);
     }
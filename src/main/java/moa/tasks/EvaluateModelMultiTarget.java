@@ -23,12 +23,11 @@ import com.github.javacliparser.FileOption;
 import com.github.javacliparser.IntOption;
 import com.yahoo.labs.samoa.instances.Instance;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.PrintStream;
 import moa.classifiers.Classifier;
 import moa.classifiers.MultiTargetRegressor;
 import moa.core.Example;
 import moa.core.ObjectRepository;
+import moa.evaluation.PredictionSink;
 import moa.evaluation.LearningEvaluation;
 import moa.evaluation.LearningPerformanceEvaluator;
 import moa.evaluation.MultiTargetPerformanceEvaluator;
@@ -100,20 +99,9 @@ public class EvaluateModelMultiTarget extends MultiTargetMainTask {
 
         //File for output predictions
         File outputPredictionFile = this.outputPredictionFileOption.getFile();
-        PrintStream outputPredictionResultStream = null;
+        PredictionSink outputPredictionSink = null;
         if (outputPredictionFile != null) {
-            try {
-                if (outputPredictionFile.exists()) {
-                    outputPredictionResultStream = new PrintStream(
-                            new FileOutputStream(outputPredictionFile, true), true);
-                } else {
-                    outputPredictionResultStream = new PrintStream(
-                            new FileOutputStream(outputPredictionFile), true);
-                }
-            } catch (Exception ex) {
-                throw new RuntimeException(
-                        "Unable to open prediction result file: " + outputPredictionFile, ex);
-            }
+            outputPredictionSink = PredictionSink.open(outputPredictionFile);
         }
         while (stream.hasMoreInstances()
                 && ((maxInstances < 0) || (instancesProcessed < maxInstances))) {
@@ -123,13 +111,16 @@ public class EvaluateModelMultiTarget extends MultiTargetMainTask {
             double[] prediction = model.getVotesForInstance(testInst);
             //evaluator.addClassificationAttempt(trueClass, prediction, testInst
             //		.weight());
-            if (outputPredictionFile != null) {
-                outputPredictionResultStream.println(prediction[0] + "," + trueClass);
+            if (outputPredictionSink != null) {
+                outputPredictionSink.writeValue(prediction[0], trueClass);
             }
             evaluator.addResult(testInst, prediction);
             instancesProcessed++;
             if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
                 if (monitor.taskShouldAbort()) {
+                    if (outputPredictionSink != null) {
+                        outputPredictionSink.close();
+                    }
                     return null;
                 }
                 long estimatedRemainingInstances = stream.estimatedRemainingInstances();
@@ -149,8 +140,8 @@ public class EvaluateModelMultiTarget extends MultiTargetMainTask {
                 }
             }
         }
-        if (outputPredictionResultStream != null) {
-            outputPredictionResultStream.close();
+        if (outputPredictionSink != null) {
+            outputPredictionSink.close();
         }
         return new LearningEvaluation(evaluator, model);
     }
@@ -21,31 +21,38 @@
 package moa.tasks;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.PrintStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import moa.classifiers.Classifier;
 import moa.classifiers.MultiClassClassifier;
 import moa.core.Example;
+import moa.core.LatencyHistogram;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
 import moa.core.TimingUtils;
+import moa.evaluation.PredictionSink;
 import moa.evaluation.WindowClassificationPerformanceEvaluator;
 import moa.evaluation.EWMAClassificationPerformanceEvaluator;
 import moa.evaluation.FadingFactorClassificationPerformanceEvaluator;
 import moa.evaluation.LearningCurve;
+import moa.evaluation.LearningCurveSink;
 import moa.evaluation.LearningEvaluation;
 import moa.evaluation.LearningPerformanceEvaluator;
+import moa.evaluation.ModelCostMeter;
 import moa.learners.Learner;
 import moa.options.ClassOption;
 
 import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import moa.streams.ExampleStream;
 import moa.streams.InstanceStream;
+import moa.streams.ParallelGeneratorStream;
+import moa.streams.PrefetchingStream;
 import com.yahoo.labs.samoa.instances.Instance;
-import moa.core.Utils;
 
 /**
  * Task for evaluating a classifier on a stream by testing then training with each example in sequence.
@@ -94,7 +101,12 @@ public class EvaluatePrequential extends ClassificationMainTask {
             Integer.MAX_VALUE);
 
     public FileOption dumpFileOption = new FileOption("dumpFile", 'd',
-            "File to append intermediate csv results to.", null, "csv", true);
+            "File to append intermediate csv results to (binary records if the name ends with .bin).",
+            null, "csv", true);
+
+    public IntOption maxCurveEntriesOption = new IntOption("maxCurveEntries", 'c',
+            "Number of last entries of the learning curve kept in memory, the others being only in the dump file (0 = all).",
+            0, 0, Integer.MAX_VALUE);
 
     public FileOption outputPredictionFileOption = new FileOption("outputPredictionFile", 'o',
             "File to append output predictions to.", null, "pred", true);
@@ -107,6 +119,33 @@ public class EvaluatePrequential extends ClassificationMainTask {
             'a', "Fading factor or exponential smoothing factor", .01);
     //End New for prequential methods
 
+    public FlagOption pipelinedOption = new FlagOption("pipelined", 'p',
+            "Read the stream, evaluate the predictions and write the outputs in other threads than the learner.");
+
+    public FlagOption latencyHistogramsOption = new FlagOption("latencyHistograms", 'y',
+            "Add percentiles of the latency of the predictions and of the training between samples to the learning curve.");
+
+    public IntOption memMeasureFrequencyOption = new IntOption("memMeasureFrequency", 'm',
+            "How many samples between measurements of the size of the model, interpolated in between for the RAM-Hours.",
+            1, 1, Integer.MAX_VALUE);
+
+    public FloatOption memMeasureBudgetOption = new FloatOption("memMeasureBudget", 'u',
+            "Maximum fraction of the evaluation time spent measuring the size of the model (0 = no limit).",
+            0.0, 0.0, 1.0);
+
+    public FlagOption useSizeEstimatesOption = new FlagOption("useSizeEstimates", 'z',
+            "Use the size of the model estimated by the learners that estimate it, instead of measuring it.");
+
+    public FileOption checkpointFileOption = new FileOption("checkpointFile", 'k',
+            "File to checkpoint the evaluation to at sample points, to resume it from if it exists, deleted when the evaluation completes. Not supported by the delayed and cross-validated prequential evaluations.",
+            null, "ckpt", true);
+
+    public IntOption checkpointIntervalOption = new IntOption("checkpointInterval", 'h',
+            "Minimum number of seconds between checkpoints.", 3600, 1, Integer.MAX_VALUE);
+
+    // Capacity of the queues between the stages of the pipelined evaluation
+    protected static final int PIPELINE_QUEUE_SIZE = 1024;
+
     @Override
     public Class<?> getTaskResultType() {
         return LearningCurve.class;
@@ -144,80 +183,110 @@ public class EvaluatePrequential extends ClassificationMainTask {
         }
         //End New for prequential methods
 
+        File checkpointFile = this.checkpointFileOption.getFile();
+        EvaluationCheckpoint resumed = null;
+        if (checkpointFile != null && checkpointFile.exists()) {
+            monitor.setCurrentActivity("Resuming from checkpoint...", -1.0);
+            resumed = EvaluationCheckpoint.readFromFile(checkpointFile);
+            learner = resumed.learner;
+            evaluator = resumed.evaluator;
+            learningCurve = resumed.learningCurve;
+        }
         learner.setModelContext(stream.getHeader());
         int maxInstances = this.instanceLimitOption.getValue();
         long instancesProcessed = 0;
         int maxSeconds = this.timeLimitOption.getValue();
         int secondsElapsed = 0;
-        monitor.setCurrentActivity("Evaluating learner...", -1.0);
 
         File dumpFile = this.dumpFileOption.getFile();
-        PrintStream immediateResultStream = null;
+        LearningCurveSink immediateResultSink = null;
         if (dumpFile != null) {
-            try {
-                if (dumpFile.exists()) {
-                    immediateResultStream = new PrintStream(
-                            new FileOutputStream(dumpFile, true), true);
-                } else {
-                    immediateResultStream = new PrintStream(
-                            new FileOutputStream(dumpFile), true);
-                }
-            } catch (Exception ex) {
-                throw new RuntimeException(
-                        "Unable to open immediate result file: " + dumpFile, ex);
+            // drop the entries written after the checkpoint
+            if (resumed != null && resumed.dumpFileLength >= 0) {
+                EvaluationCheckpoint.truncate(dumpFile, resumed.dumpFileLength);
+            }
+            immediateResultSink = LearningCurveSink.open(dumpFile);
+            if (resumed != null && resumed.dumpFileLength >= 0) {
+                immediateResultSink.resume(learningCurve);
             }
+            learningCurve.setMaxEntries(this.maxCurveEntriesOption.getValue());
         }
         //File for output predictions
         File outputPredictionFile = this.outputPredictionFileOption.getFile();
-        PrintStream outputPredictionResultStream = null;
+        PredictionSink outputPredictionSink = null;
+        long predictionFileStart = -1;
         if (outputPredictionFile != null) {
-            try {
-                if (outputPredictionFile.exists()) {
-                    outputPredictionResultStream = new PrintStream(
-                            new FileOutputStream(outputPredictionFile, true), true);
-                } else {
-                    outputPredictionResultStream = new PrintStream(
-                            new FileOutputStream(outputPredictionFile), true);
-                }
-            } catch (Exception ex) {
-                throw new RuntimeException(
-                        "Unable to open prediction result file: " + outputPredictionFile, ex);
+            if (resumed != null && resumed.predictionFileStart >= 0) {
+                predictionFileStart = resumed.predictionFileStart;
+                EvaluationCheckpoint.truncate(outputPredictionFile,
+                        PredictionSink.classPredictionsLength(outputPredictionFile,
+                        predictionFileStart, resumed.instancesProcessed));
+            } else {
+                predictionFileStart = outputPredictionFile.length();
+            }
+            outputPredictionSink = PredictionSink.open(outputPredictionFile);
+        }
+        Checkpointer checkpointer = checkpointFile == null ? null : new Checkpointer(
+                checkpointFile, this.checkpointIntervalOption.getValue(),
+                dumpFile, predictionFileStart);
+        if (resumed != null) {
+            // restarted streams are replayed up to the checkpoint
+            monitor.setCurrentActivity("Skipping instances before checkpoint...", -1.0);
+            while (instancesProcessed < resumed.instancesProcessed && stream.hasMoreInstances()) {
+                stream.nextInstance();
+                instancesProcessed++;
             }
         }
-        boolean firstDump = true;
+        monitor.setCurrentActivity("Evaluating learner...", -1.0);
+        if (this.pipelinedOption.isSet()) {
+            return evaluatePipelined(learner, stream, evaluator, learningCurve, monitor,
+                    immediateResultSink, outputPredictionSink, resumed, checkpointer);
+        }
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
         long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
-        long lastEvaluateStartTime = evaluateStartTime;
-        double RAMHours = 0.0;
+        ModelCostMeter modelCost = newModelCostMeter();
+        if (resumed != null) {
+            evaluateStartTime -= resumed.evaluationTime;
+            modelCost = resumed.modelCost;
+        }
+        // null unless the latencies are recorded
+        LatencyHistogram predictLatency = this.latencyHistogramsOption.isSet() ? new LatencyHistogram() : null;
+        LatencyHistogram trainLatency = this.latencyHistogramsOption.isSet() ? new LatencyHistogram() : null;
         while (stream.hasMoreInstances()
                 && ((maxInstances < 0) || (instancesProcessed < maxInstances))
                 && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
             Example trainInst = stream.nextInstance();
             Example testInst = (Example) trainInst; //.copy();
             //testInst.setClassMissing();
+            long startTime = predictLatency != null ? System.nanoTime() : 0;
             double[] prediction = learner.getVotesForInstance(testInst);
+            if (predictLatency != null) {
+                predictLatency.recordValue(System.nanoTime() - startTime);
+            }
             // Output prediction
-            if (outputPredictionFile != null) {
-                int trueClass = (int) ((Instance) trainInst.getData()).classValue();
-                outputPredictionResultStream.println(Utils.maxIndex(prediction) + "," + (
-                 ((Instance) testInst.getData()).classIsMissing() == true ? " ? " : trueClass));
+            if (outputPredictionSink != null) {
+                outputPredictionSink.writeVotes(prediction, (Instance) testInst.getData());
             }
 
             //evaluator.addClassificationAttempt(trueClass, prediction, testInst.weight());
             evaluator.addResult(testInst, prediction);
-            learner.trainOnInstance(trainInst);
+            if (trainLatency != null) {
+                startTime = System.nanoTime();
+                learner.trainOnInstance(trainInst);
+                trainLatency.recordValue(System.nanoTime() - startTime);
+            } else {
+                learner.trainOnInstance(trainInst);
+            }
             instancesProcessed++;
             if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
                     || stream.hasMoreInstances() == false) {
                 long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
                 double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
-                double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
-                double RAMHoursIncrement = learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
-                RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
-                RAMHours += RAMHoursIncrement;
-                lastEvaluateStartTime = evaluateTime;
-                learningCurve.insertEntry(new LearningEvaluation(
-                        new Measurement[]{
+                Measurement[] modelMeasurements = modelCost.sample(learner, time,
+                        !stream.hasMoreInstances() || instancesProcessed == maxInstances);
+                monitor.setModelByteSize(modelCost.getLastByteSize());
+                LearningEvaluation learningEvaluation = new LearningEvaluation(
+                        addLatencyMeasurements(new Measurement[]{
                             new Measurement(
                             "learning evaluation instances",
                             instancesProcessed),
@@ -228,21 +297,34 @@ public class EvaluatePrequential extends ClassificationMainTask {
                             time),
                             new Measurement(
                             "model cost (RAM-Hours)",
-                            RAMHours)
-                        },
-                        evaluator, learner));
-
-                if (immediateResultStream != null) {
-                    if (firstDump) {
-                        immediateResultStream.println(learningCurve.headerToString());
-                        firstDump = false;
-                    }
-                    immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
-                    immediateResultStream.flush();
+                            modelCost.getRAMHours())
+                        }, predictLatency, trainLatency),
+                        evaluator, modelMeasurements);
+                learningCurve.insertEntry(learningEvaluation);
+                monitor.setLatestMeasurements(learningEvaluation.getMeasurements());
+
+                if (immediateResultSink != null) {
+                    immediateResultSink.writeLastEntry(learningCurve);
+                }
+                if (checkpointer != null && checkpointer.isDue()) {
+                    checkpointer.checkpoint(learner, evaluator, learningCurve,
+                            instancesProcessed, evaluateTime - evaluateStartTime, modelCost,
+                            outputPredictionSink);
                 }
             }
             if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
+                monitor.setInstancesProcessed(instancesProcessed);
                 if (monitor.taskShouldAbort()) {
+                    if (immediateResultSink != null) {
+                        immediateResultSink.close();
+                    }
+                    if (outputPredictionSink != null) {
+                        outputPredictionSink.close();
+                    }
+                    if (checkpointer != null) {
+                        checkpointer.close();
+                    }
+                    closeStream(stream);
                     return null;
                 }
                 long estimatedRemainingInstances = stream.estimatedRemainingInstances();
@@ -263,12 +345,452 @@ public class EvaluatePrequential extends ClassificationMainTask {
                         - evaluateStartTime);
             }
         }
-        if (immediateResultStream != null) {
-            immediateResultStream.close();
+        if (immediateResultSink != null) {
+            immediateResultSink.close();
+        }
+        if (outputPredictionSink != null) {
+            outputPredictionSink.close();
         }
-        if (outputPredictionResultStream != null) {
-            outputPredictionResultStream.close();
+        if (checkpointer != null) {
+            checkpointer.complete();
         }
+        closeStream(stream);
         return learningCurve;
     }
+
+    /**
+     * Evaluates the learner with a pipeline of threads: the stream is read
+     * ahead by a PrefetchingStream, this thread only predicts and trains, in
+     * the same order as the sequential evaluation, and an evaluation stage
+     * adds the results to the evaluator and the learning curve and writes the
+     * predictions and the entries of the dump file. The model measurements and the time
+     * are taken by this thread when a sample is due, so the learning curve is
+     * the same as the sequential one, except that the time is the one of the
+     * learner only. The instances are shared with the evaluation stage, so
+     * the learner must not modify them (learners copy the instances they
+     * reweight).
+     */
+    protected Object evaluatePipelined(Learner learner, ExampleStream stream,
+            LearningPerformanceEvaluator evaluator, LearningCurve learningCurve,
+            TaskMonitor monitor, LearningCurveSink immediateResultSink,
+            PredictionSink outputPredictionSink, EvaluationCheckpoint resumed,
+            Checkpointer checkpointer) {
+        int maxInstances = this.instanceLimitOption.getValue();
+        long instancesProcessed = resumed != null ? resumed.instancesProcessed : 0;
+        int maxSeconds = this.timeLimitOption.getValue();
+        int secondsElapsed = 0;
+        PrefetchingStream input = new PrefetchingStream(stream);
+        EvaluationStage evaluation = new EvaluationStage(evaluator, learningCurve,
+                monitor, immediateResultSink, outputPredictionSink, checkpointer);
+        evaluation.start();
+        boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
+        long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        ModelCostMeter modelCost = newModelCostMeter();
+        if (resumed != null) {
+            evaluateStartTime -= resumed.evaluationTime;
+            modelCost = resumed.modelCost;
+        }
+        LatencyHistogram predictLatency = this.latencyHistogramsOption.isSet() ? new LatencyHistogram() : null;
+        LatencyHistogram trainLatency = this.latencyHistogramsOption.isSet() ? new LatencyHistogram() : null;
+        try {
+            while (input.hasMoreInstances()
+                    && ((maxInstances < 0) || (instancesProcessed < maxInstances))
+                    && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
+                Example trainInst = input.nextInstance();
+                long startTime = predictLatency != null ? System.nanoTime() : 0;
+                double[] prediction = learner.getVotesForInstance(trainInst);
+                if (predictLatency != null) {
+                    predictLatency.recordValue(System.nanoTime() - startTime);
+                }
+                evaluation.put(new Prediction(trainInst, prediction.clone()));
+                if (trainLatency != null) {
+                    startTime = System.nanoTime();
+                    learner.trainOnInstance(trainInst);
+                    trainLatency.recordValue(System.nanoTime() - startTime);
+                } else {
+                    learner.trainOnInstance(trainInst);
+                }
+                instancesProcessed++;
+                if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
+                        || input.hasMoreInstances() == false) {
+                    long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                    double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
+                    Measurement[] modelMeasurements = modelCost.sample(learner, time,
+                            !input.hasMoreInstances() || instancesProcessed == maxInstances);
+                    monitor.setModelByteSize(modelCost.getLastByteSize());
+                    evaluation.put(new Sample(
+                            addLatencyMeasurements(new Measurement[]{
+                                new Measurement(
+                                "learning evaluation instances",
+                                instancesProcessed),
+                                new Measurement(
+                                "evaluation time ("
+                                + (preciseCPUTiming ? "cpu "
+                                : "") + "seconds)",
+                                time),
+                                new Measurement(
+                                "model cost (RAM-Hours)",
+                                modelCost.getRAMHours())
+                            }, predictLatency, trainLatency),
+                            modelMeasurements));
+                    if (checkpointer != null && checkpointer.isDue()) {
+                        evaluation.put(new PendingCheckpoint((Learner) learner.copy(),
+                                instancesProcessed, evaluateTime - evaluateStartTime,
+                                (ModelCostMeter) modelCost.copy()));
+                    }
+                }
+                if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
+                    monitor.setInstancesProcessed(instancesProcessed);
+                    if (monitor.taskShouldAbort()) {
+                        if (checkpointer != null) {
+                            checkpointer.close();
+                        }
+                        return null;
+                    }
+                    long estimatedRemainingInstances = input.estimatedRemainingInstances();
+                    if (maxInstances > 0) {
+                        long maxRemaining = maxInstances - instancesProcessed;
+                        if ((estimatedRemainingInstances < 0)
+                                || (maxRemaining < estimatedRemainingInstances)) {
+                            estimatedRemainingInstances = maxRemaining;
+                        }
+                    }
+                    monitor.setCurrentActivityFractionComplete(estimatedRemainingInstances < 0 ? -1.0
+                            : (double) instancesProcessed
+                            / (double) (instancesProcessed + estimatedRemainingInstances));
+                    if (monitor.resultPreviewRequested()) {
+                        synchronized (learningCurve) {
+                            monitor.setLatestResultPreview(learningCurve.copy());
+                        }
+                    }
+                    secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+                            - evaluateStartTime);
+                }
+            }
+            evaluation.finish();
+            if (checkpointer != null) {
+                checkpointer.complete();
+            }
+        } finally {
+            input.close();
+            closeStream(stream);
+            evaluation.abort();
+            if (immediateResultSink != null) {
+                immediateResultSink.close();
+            }
+            if (outputPredictionSink != null) {
+                outputPredictionSink.close();
+            }
+        }
+        return learningCurve;
+    }
+
+    /**
+     * Stops the threads of the stream, if it has any, once the evaluation
+     * ended.
+     */
+    protected static void closeStream(ExampleStream stream) {
+        if (stream instanceof ParallelGeneratorStream) {
+            ((ParallelGeneratorStream) stream).close();
+        }
+    }
+
+    protected ModelCostMeter newModelCostMeter() {
+        return new ModelCostMeter(this.memMeasureFrequencyOption.getValue(),
+                this.memMeasureBudgetOption.getValue(), this.useSizeEstimatesOption.isSet());
+    }
+
+    /**
+     * Appends the latency percentiles since the previous sample to the
+     * measurements and resets the histograms, if they are recorded.
+     */
+    protected static Measurement[] addLatencyMeasurements(Measurement[] measurements,
+            LatencyHistogram predictLatency, LatencyHistogram trainLatency) {
+        if (predictLatency == null) {
+            return measurements;
+        }
+        Measurement[] predict = predictLatency.getMeasurements("predict");
+        Measurement[] train = trainLatency.getMeasurements("train");
+        Measurement[] all = new Measurement[measurements.length + predict.length + train.length];
+        System.arraycopy(measurements, 0, all, 0, measurements.length);
+        System.arraycopy(predict, 0, all, measurements.length, predict.length);
+        System.arraycopy(train, 0, all, measurements.length + predict.length, train.length);
+        predictLatency.reset();
+        trainLatency.reset();
+        return all;
+    }
+
+    /** Prediction of the learner for an example, before training on it. */
+    protected static class Prediction {
+
+        protected final Example example;
+
+        protected final double[] votes;
+
+        public Prediction(Example example, double[] votes) {
+            this.example = example;
+            this.votes = votes;
+        }
+    }
+
+    /** Measurements taken by the learner thread when a sample is due. */
+    protected static class Sample {
+
+        protected final Measurement[] evaluationMeasurements;
+
+        protected final Measurement[] modelMeasurements;
+
+        public Sample(Measurement[] evaluationMeasurements, Measurement[] modelMeasurements) {
+            this.evaluationMeasurements = evaluationMeasurements;
+            this.modelMeasurements = modelMeasurements;
+        }
+    }
+
+    /**
+     * State of the learner thread at a sample point, checkpointed by the
+     * evaluation stage with the evaluator and the learning curve.
+     */
+    protected static class PendingCheckpoint {
+
+        protected final Learner learner;
+
+        protected final long instancesProcessed;
+
+        protected final long evaluationTime;
+
+        protected final ModelCostMeter modelCost;
+
+        public PendingCheckpoint(Learner learner, long instancesProcessed,
+                long evaluationTime, ModelCostMeter modelCost) {
+            this.learner = learner;
+            this.instancesProcessed = instancesProcessed;
+            this.evaluationTime = evaluationTime;
+            this.modelCost = modelCost;
+        }
+    }
+
+    /**
+     * Takes checkpoints of the evaluation at sample points, when the interval
+     * has elapsed since the previous one and it is written.
+     */
+    protected static class Checkpointer {
+
+        protected final File checkpointFile;
+
+        protected final EvaluationCheckpoint.Writer writer;
+
+        protected final long interval;
+
+        protected final File dumpFile;
+
+        protected final long predictionFileStart;
+
+        protected long lastCheckpointTime = System.nanoTime();
+
+        public Checkpointer(File checkpointFile, int intervalSeconds, File dumpFile,
+                long predictionFileStart) {
+            this.checkpointFile = checkpointFile;
+            this.writer = new EvaluationCheckpoint.Writer(checkpointFile);
+            this.interval = intervalSeconds * 1000000000L;
+            this.dumpFile = dumpFile;
+            this.predictionFileStart = predictionFileStart;
+        }
+
+        /** Gets whether a checkpoint is due, starting the next interval if so. */
+        public boolean isDue() {
+            long time = System.nanoTime();
+            if (time - this.lastCheckpointTime < this.interval || this.writer.isWriting()) {
+                return false;
+            }
+            this.lastCheckpointTime = time;
+            return true;
+        }
+
+        /**
+         * Serializes the state of the evaluation, once the entries and the
+         * predictions so far are in the files, and writes it in another
+         * thread.
+         */
+        public synchronized void checkpoint(Learner learner,
+                LearningPerformanceEvaluator evaluator, LearningCurve learningCurve,
+                long instancesProcessed, long evaluationTime, ModelCostMeter modelCost,
+                PredictionSink outputPredictionSink) {
+            if (outputPredictionSink != null) {
+                outputPredictionSink.flush();
+            }
+            this.writer.write(new EvaluationCheckpoint(learner, evaluator, learningCurve,
+                    instancesProcessed, evaluationTime, modelCost,
+                    this.dumpFile != null ? this.dumpFile.length() : -1,
+                    this.predictionFileStart).toByteArray());
+        }
+
+        /** Waits until the last checkpoint is written. */
+        public synchronized void close() {
+            this.writer.waitForWrite();
+        }
+
+        /** Deletes the checkpoint of the completed evaluation. */
+        public synchronized void complete() {
+            this.writer.waitForWrite();
+            this.checkpointFile.delete();
+        }
+    }
+
+    /**
+     * Thread processing the items of a bounded queue, in order.
+     */
+    protected abstract static class PipelineStage<T> extends Thread {
+
+        // Marks the end of the items
+        private final Object endOfItems = new Object();
+
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(PIPELINE_QUEUE_SIZE);
+
+        private volatile boolean stopped;
+
+        // Whether the end of the items was reached, so all were processed
+        private volatile boolean completed;
+
+        private volatile Throwable error;
+
+        public PipelineStage(String name) {
+            super(name);
+            setDaemon(true);
+        }
+
+        protected abstract void process(T item);
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void run() {
+            try {
+                while (!this.stopped) {
+                    Object item = this.queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (item == this.endOfItems) {
+                        this.completed = true;
+                        return;
+                    } else if (item != null) {
+                        process((T) item);
+                    }
+                }
+            } catch (InterruptedException ie) {
+                // stopped
+            } catch (Throwable e) {
+                // an Error too, so that finish() does not report the items as processed
+                this.error = e;
+            }
+        }
+
+        /** Waits for room in the queue, fails if the stage failed. */
+        public void put(Object item) {
+            try {
+                while (!this.queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                    if (!isAlive()) {
+                        throw new RuntimeException("Pipeline stage " + getName() + " failed.", this.error);
+                    }
+                }
+            } catch (InterruptedException ie) {
+                throw new RuntimeException("Interrupted while waiting for " + getName() + ".", ie);
+            }
+        }
+
+        /**
+         * Waits until all the items are processed, fails if the stage ended
+         * before processing them.
+         */
+        public void finish() {
+            put(this.endOfItems);
+            try {
+                join();
+            } catch (InterruptedException ie) {
+                throw new RuntimeException("Interrupted while waiting for " + getName() + ".", ie);
+            }
+            if (!this.completed) {
+                throw new RuntimeException("Pipeline stage " + getName() + " failed.", this.error);
+            }
+        }
+
+        /**
+         * Stops the stage without processing the remaining items, and waits
+         * until the item being processed is done, so that what it writes to
+         * can be closed.
+         */
+        public void abort() {
+            this.stopped = true;
+            try {
+                join();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Stage adding the predictions to the evaluator and the samples to the
+     * learning curve, writing the predictions and the entries of the dump
+     * file.
+     */
+    protected static class EvaluationStage extends PipelineStage<Object> {
+
+        protected final LearningPerformanceEvaluator evaluator;
+
+        protected final LearningCurve learningCurve;
+
+        protected final TaskMonitor monitor;
+
+        protected final LearningCurveSink immediateResultSink;
+
+        protected final PredictionSink outputPredictionSink;
+
+        protected final Checkpointer checkpointer;
+
+        public EvaluationStage(LearningPerformanceEvaluator evaluator,
+                LearningCurve learningCurve, TaskMonitor monitor,
+                LearningCurveSink immediateResultSink,
+                PredictionSink outputPredictionSink, Checkpointer checkpointer) {
+            super("Prequential evaluation");
+            this.evaluator = evaluator;
+            this.learningCurve = learningCurve;
+            this.monitor = monitor;
+            this.immediateResultSink = immediateResultSink;
+            this.outputPredictionSink = outputPredictionSink;
+            this.checkpointer = checkpointer;
+        }
+
+        @Override
+        protected void process(Object item) {
+            if (item instanceof Prediction) {
+                Prediction prediction = (Prediction) item;
+                if (this.outputPredictionSink != null) {
+                    this.outputPredictionSink.writeVotes(prediction.votes,
+                            (Instance) prediction.example.getData());
+                }
+                this.evaluator.addResult(prediction.example, prediction.votes);
+            } else if (item instanceof PendingCheckpoint) {
+                PendingCheckpoint pending = (PendingCheckpoint) item;
+                this.checkpointer.checkpoint(pending.learner, this.evaluator,
+                        this.learningCurve, pending.instancesProcessed,
+                        pending.evaluationTime, pending.modelCost, this.outputPredictionSink);
+            } else {
+                Sample sample = (Sample) item;
+                Measurement[] performance = this.evaluator.getPerformanceMeasurements();
+                Measurement[] measurements = new Measurement[sample.evaluationMeasurements.length
+                        + performance.length + sample.modelMeasurements.length];
+                System.arraycopy(sample.evaluationMeasurements, 0, measurements, 0,
+                        sample.evaluationMeasurements.length);
+                System.arraycopy(performance, 0, measurements,
+                        sample.evaluationMeasurements.length, performance.length);
+                System.arraycopy(sample.modelMeasurements, 0, measurements,
+                        sample.evaluationMeasurements.length + performance.length,
+                        sample.modelMeasurements.length);
+                synchronized (this.learningCurve) {
+                    this.learningCurve.insertEntry(new LearningEvaluation(measurements));
+                    if (this.immediateResultSink != null) {
+                        this.immediateResultSink.writeLastEntry(this.learningCurve);
+                    }
+                }
+                this.monitor.setLatestMeasurements(measurements);
+            }
+        }
+    }
 }
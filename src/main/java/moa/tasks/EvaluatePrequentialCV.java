@@ -34,10 +34,16 @@ import moa.streams.ExampleStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Task for prequential cross-validation evaluation of a classifier on a stream by testing then training with each
@@ -46,6 +52,12 @@ import java.util.Random;
  * <p>Albert Bifet, Gianmarco De Francisci Morales, Jesse Read, Geoff Holmes, Bernhard Pfahringer: Efficient Online
  * Evaluation of Big Data Stream Classifiers. KDD 2015: 59-68</p>
  *
+ * <p>With several jobs (<code>-j</code>), the folds are tested and trained concurrently on a thread pool: the examples
+ * and the weights of the folds are gathered in batches of <code>-b</code> examples, every fold processes a batch in
+ * order in one job, and the next batch is read from the stream meanwhile. All the folds have processed the same
+ * examples when a sample is taken, so the learning curve is the same as the sequential one, the evaluation time being
+ * the CPU time of all the threads.</p>
+ *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @author Albert Bifet (abifet at cs dot waikato dot ac dot nz)
  * @version $Revision: 7 $
@@ -107,6 +119,13 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
     public IntOption randomSeedOption = new IntOption("randomSeed", 'r',
             "Seed for random behaviour of the task.", 1);
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Number of concurrent jobs testing and training the folds (-1 = as many as processors, 0 or 1 = sequential).",
+            1, -1, Integer.MAX_VALUE);
+
+    public IntOption batchSizeOption = new IntOption("batchSize", 'b',
+            "Number of examples handed to the folds at once when using several jobs.", 1000, 1, Integer.MAX_VALUE);
+
 
     @Override
     public Class<?> getTaskResultType() {
@@ -156,101 +175,125 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
             }
         }
 
+        int numberOfJobs = this.numberOfJobsOption.getValue() == -1
+                ? Runtime.getRuntime().availableProcessors() : this.numberOfJobsOption.getValue();
+        // executor is null when the folds are processed by this thread
+        ExecutorService executor = numberOfJobs > 1 ? Executors.newFixedThreadPool(numberOfJobs) : null;
+        FoldBatch batch = new FoldBatch(this.batchSizeOption.getValue(), learners.length);
+        List<Future<Long>> running = null;
+        // CPU time of the jobs
+        long foldsCPUTime = 0;
+
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
         long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
-        while (stream.hasMoreInstances()
-                && ((maxInstances < 0) || (instancesProcessed < maxInstances))
-                && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
-            Example trainInst = stream.nextInstance();
-            Example testInst = (Example) trainInst; //.copy();
-            //testInst.setClassMissing();
-
-            for (int i = 0; i < learners.length; i++) {
-                evaluators[i].addResult(testInst, learners[i].getVotesForInstance(testInst));
-            }
+        try {
+            while (stream.hasMoreInstances()
+                    && ((maxInstances < 0) || (instancesProcessed < maxInstances))
+                    && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
+                Example trainInst = stream.nextInstance();
+                Example testInst = (Example) trainInst; //.copy();
+                //testInst.setClassMissing();
+
+                if (executor != null) {
+                    batch.add(trainInst);
+                    for (int i = 0; i < learners.length; i++) {
+                        batch.setWeight(i, foldWeight(i, instancesProcessed, learners.length, random));
+                    }
+                } else {
+                    for (int i = 0; i < learners.length; i++) {
+                        evaluators[i].addResult(testInst, learners[i].getVotesForInstance(testInst));
+                    }
 
-            for (int i = 0; i < learners.length; i++) {
-                int k = 1;
-                switch (this.validationMethodologyOption.getChosenIndex()) {
-                    case 0: //Cross-Validation;
-                        k = instancesProcessed % learners.length == i ? 0: 1; //Test all except one
-                        break;
-                    case 1: //Bootstrap;
-                        k = MiscUtils.poisson(1, random);
-                        break;
-                    case 2: //Split-Validation;
-                        k = instancesProcessed % learners.length == i ? 1: 0; //Test only one
-                        break;
-                }
-                if (k > 0) {
-                    Example weightedInst = (Example) trainInst.copy();
-                    weightedInst.setWeight(trainInst.weight() * k);
-                    learners[i].trainOnInstance(weightedInst);
+                    for (int i = 0; i < learners.length; i++) {
+                        trainFold(learners[i], trainInst, foldWeight(i, instancesProcessed, learners.length, random));
+                    }
                 }
-            }
 
-            instancesProcessed++;
-            if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
-                    || stream.hasMoreInstances() == false) {
-                long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
-                double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
-                double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
-
-                for (int i = 0; i < learners.length; i++) {
-                    double RAMHoursIncrement = learners[i].measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
-                    RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
-                    RAMHours += RAMHoursIncrement;
+                instancesProcessed++;
+                boolean sampleDue = instancesProcessed % this.sampleFrequencyOption.getValue() == 0
+                        || stream.hasMoreInstances() == false;
+                if (executor != null && (sampleDue || batch.isFull())) {
+                    // the previous batch is processed while this one was read
+                    foldsCPUTime += waitForFolds(running);
+                    running = submitFolds(executor, batch, learners, evaluators);
+                    batch = new FoldBatch(this.batchSizeOption.getValue(), learners.length);
+                    if (sampleDue) {
+                        foldsCPUTime += waitForFolds(running);
+                        running = null;
+                    }
                 }
+                if (sampleDue) {
+                    long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread() + foldsCPUTime;
+                    double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
+                    double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
+
+                    for (int i = 0; i < learners.length; i++) {
+                        double RAMHoursIncrement = learners[i].measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
+                        RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
+                        RAMHours += RAMHoursIncrement;
+                    }
 
-                lastEvaluateStartTime = evaluateTime;
-                learningCurve.insertEntry(new LearningEvaluation(
-                        getEvaluationMeasurements(
-                        new Measurement[]{
-                                new Measurement(
-                                        "learning evaluation instances",
-                                        instancesProcessed),
-                                new Measurement(
-                                        "evaluation time ("
-                                                + (preciseCPUTiming ? "cpu "
-                                                : "") + "seconds)",
-                                        time),
-                                new Measurement(
-                                        "model cost (RAM-Hours)",
-                                        RAMHours)
-                        }, evaluators)));
-
-                if (immediateResultStream != null) {
-                    if (firstDump) {
-                        immediateResultStream.println(learningCurve.headerToString());
-                        firstDump = false;
+                    lastEvaluateStartTime = evaluateTime;
+                    learningCurve.insertEntry(new LearningEvaluation(
+                            getEvaluationMeasurements(
+                            new Measurement[]{
+                                    new Measurement(
+                                            "learning evaluation instances",
+                                            instancesProcessed),
+                                    new Measurement(
+                                            "evaluation time ("
+                                                    + (preciseCPUTiming ? "cpu "
+                                                    : "") + "seconds)",
+                                            time),
+                                    new Measurement(
+                                            "model cost (RAM-Hours)",
+                                            RAMHours)
+                            }, evaluators)));
+
+                    if (immediateResultStream != null) {
+                        if (firstDump) {
+                            immediateResultStream.println(learningCurve.headerToString());
+                            firstDump = false;
+                        }
+                        immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
+                        immediateResultStream.flush();
                     }
-                    immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
-                    immediateResultStream.flush();
-                }
-            }
-            if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
-                if (monitor.taskShouldAbort()) {
-                    return null;
                 }
-                long estimatedRemainingInstances = stream.estimatedRemainingInstances();
-                if (maxInstances > 0) {
-                    long maxRemaining = maxInstances - instancesProcessed;
-                    if ((estimatedRemainingInstances < 0)
-                            || (maxRemaining < estimatedRemainingInstances)) {
-                        estimatedRemainingInstances = maxRemaining;
+                if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
+                    if (monitor.taskShouldAbort()) {
+                        return null;
                     }
+                    long estimatedRemainingInstances = stream.estimatedRemainingInstances();
+                    if (maxInstances > 0) {
+                        long maxRemaining = maxInstances - instancesProcessed;
+                        if ((estimatedRemainingInstances < 0)
+                                || (maxRemaining < estimatedRemainingInstances)) {
+                            estimatedRemainingInstances = maxRemaining;
+                        }
+                    }
+                    monitor.setCurrentActivityFractionComplete(estimatedRemainingInstances < 0 ? -1.0
+                            : (double) instancesProcessed
+                            / (double) (instancesProcessed + estimatedRemainingInstances));
+                    if (monitor.resultPreviewRequested()) {
+                        monitor.setLatestResultPreview(learningCurve.copy());
+                    }
+                    secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+                            + foldsCPUTime - evaluateStartTime);
                 }
-                monitor.setCurrentActivityFractionComplete(estimatedRemainingInstances < 0 ? -1.0
-                        : (double) instancesProcessed
-                        / (double) (instancesProcessed + estimatedRemainingInstances));
-                if (monitor.resultPreviewRequested()) {
-                    monitor.setLatestResultPreview(learningCurve.copy());
+            }
+            if (executor != null) {
+                // the instance or time limit was reached before a sample
+                waitForFolds(running);
+                if (batch.size > 0) {
+                    waitForFolds(submitFolds(executor, batch, learners, evaluators));
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
-                        - evaluateStartTime);
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
             }
         }
         if (immediateResultStream != null) {
@@ -259,6 +302,123 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
         return learningCurve;
     }
 
+    /**
+     * Returns the weight of the example for the fold, according to the validation methodology.
+     */
+    protected int foldWeight(int fold, long instancesProcessed, int numFolds, Random random) {
+        int k = 1;
+        switch (this.validationMethodologyOption.getChosenIndex()) {
+            case 0: //Cross-Validation;
+                k = instancesProcessed % numFolds == fold ? 0: 1; //Test all except one
+                break;
+            case 1: //Bootstrap;
+                k = MiscUtils.poisson(1, random);
+                break;
+            case 2: //Split-Validation;
+                k = instancesProcessed % numFolds == fold ? 1: 0; //Test only one
+                break;
+        }
+        return k;
+    }
+
+    protected static void trainFold(Learner learner, Example trainInst, int k) {
+        if (k > 0) {
+            Example weightedInst = (Example) trainInst.copy();
+            weightedInst.setWeight(trainInst.weight() * k);
+            learner.trainOnInstance(weightedInst);
+        }
+    }
+
+    protected static List<Future<Long>> submitFolds(ExecutorService executor, FoldBatch batch,
+            Learner[] learners, LearningPerformanceEvaluator[] evaluators) {
+        List<Future<Long>> futures = new ArrayList<Future<Long>>(learners.length);
+        for (int i = 0; i < learners.length; i++) {
+            futures.add(executor.submit(new FoldJob(learners[i], evaluators[i], batch, i)));
+        }
+        return futures;
+    }
+
+    /**
+     * Waits until the folds have processed their batch and returns the CPU time they took.
+     */
+    protected static long waitForFolds(List<Future<Long>> futures) {
+        long cpuTime = 0;
+        if (futures != null) {
+            for (Future<Long> future : futures) {
+                try {
+                    cpuTime += future.get();
+                } catch (InterruptedException ie) {
+                    throw new RuntimeException("Interrupted while waiting for the folds.", ie);
+                } catch (ExecutionException ee) {
+                    throw new RuntimeException("Failed evaluating a fold.", ee.getCause());
+                }
+            }
+        }
+        return cpuTime;
+    }
+
+    /** Examples read from the stream and their weights for every fold. */
+    protected static class FoldBatch {
+
+        protected final Example[] examples;
+
+        // weight of example j for fold i at j * numFolds + i
+        protected final int[] weights;
+
+        protected final int numFolds;
+
+        protected int size;
+
+        public FoldBatch(int capacity, int numFolds) {
+            this.examples = new Example[capacity];
+            this.weights = new int[capacity * numFolds];
+            this.numFolds = numFolds;
+        }
+
+        public void add(Example example) {
+            this.examples[this.size++] = example;
+        }
+
+        /** Sets the weight of the last example added for the fold. */
+        public void setWeight(int fold, int k) {
+            this.weights[(this.size - 1) * this.numFolds + fold] = k;
+        }
+
+        public boolean isFull() {
+            return this.size == this.examples.length;
+        }
+    }
+
+    /** Job testing then training a fold with the examples of a batch, in order. */
+    protected static class FoldJob implements Callable<Long> {
+
+        protected final Learner learner;
+
+        protected final LearningPerformanceEvaluator evaluator;
+
+        protected final FoldBatch batch;
+
+        protected final int fold;
+
+        public FoldJob(Learner learner, LearningPerformanceEvaluator evaluator, FoldBatch batch, int fold) {
+            this.learner = learner;
+            this.evaluator = evaluator;
+            this.batch = batch;
+            this.fold = fold;
+        }
+
+        @Override
+        public Long call() {
+            long start = TimingUtils.getNanoCPUTimeOfCurrentThread();
+            for (int j = 0; j < this.batch.size; j++) {
+                Example example = this.batch.examples[j];
+                this.evaluator.addResult(example, this.learner.getVotesForInstance(example));
+                trainFold(this.learner, example, this.batch.weights[j * this.batch.numFolds + this.fold]);
+            }
+            return TimingUtils.getNanoCPUTimeOfCurrentThread() - start;
+        }
+    }
+
 
     public Measurement[] getEvaluationMeasurements(Measurement[] modelMeasurements, LearningPerformanceEvaluator[] subEvaluators) {
         List<Measurement> measurementList = new LinkedList<Measurement>();
@@ -31,6 +31,7 @@ import moa.core.Example;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
 import moa.core.TimingUtils;
+import moa.evaluation.PredictionSink;
 import moa.evaluation.WindowClassificationPerformanceEvaluator;
 import moa.evaluation.EWMAClassificationPerformanceEvaluator;
 import moa.evaluation.FadingFactorClassificationPerformanceEvaluator;
@@ -46,7 +47,8 @@ import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import moa.streams.ExampleStream;
 import com.yahoo.labs.samoa.instances.Instance;
-import java.util.LinkedList;
+import java.util.Random;
+import moa.core.DelayedExampleQueue;
 import moa.core.InstanceExample;
 import moa.core.Utils;
 
@@ -88,6 +90,16 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
     public IntOption delayLengthOption = new IntOption("delay", 'k',
             "Number of instances before test instance is used for training",
             1000, 1, Integer.MAX_VALUE);
+
+    public IntOption maxDelayLengthOption = new IntOption("maxDelay", 'x',
+            "Maximum number of instances before test instance is used for training, the delay of each instance being drawn uniformly between delay and maxDelay (0 = fixed delay).",
+            0, 0, Integer.MAX_VALUE);
+
+    public IntOption randomSeedOption = new IntOption("randomSeed", 'r',
+            "Seed for the random delays.", 1);
+
+    public FlagOption compactDelayedInstancesOption = new FlagOption("compactDelayedInstances", 'c',
+            "Keep only the values and the weight of the instances waiting for training, for dense streams.");
     
     public IntOption initialWindowSizeOption = new IntOption("initialTrainingWindow", 'p',
         "Number of instances used for training in the beginning of the stream.",
@@ -97,7 +109,7 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
             "Whether to train or not using instances in the initial window.");
     
     public FlagOption trainInBatches = new FlagOption("trainInBatches", 'b', 
-        "If set training will not be interleaved with testing. ");
+        "If set training will not be interleaved with testing (fixed delay only). ");
     
     public IntOption instanceLimitOption = new IntOption("instanceLimit", 'i',
             "Maximum number of instances to test/train on  (-1 = no limit).",
@@ -131,7 +143,7 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
             'a', "Fading factor or exponential smoothing factor", .01);
 
     // Buffer of instances to use for training. 
-    protected LinkedList<Example> trainInstances;
+    protected DelayedExampleQueue trainInstances;
     
     @Override
     public Class<?> getTaskResultType() {
@@ -146,7 +158,11 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
         LearningCurve learningCurve = new LearningCurve(
                 "learning evaluation instances");
 
-        this.trainInstances = new LinkedList<Example>();
+        int delay = this.delayLengthOption.getValue();
+        int maxDelay = Math.max(delay, this.maxDelayLengthOption.getValue());
+        Random delayRandom = new Random(this.randomSeedOption.getValue());
+        this.trainInstances = new DelayedExampleQueue(maxDelay + 1, maxDelay == delay,
+                this.compactDelayedInstancesOption.isSet() ? stream.getHeader() : null);
         
         //New for prequential methods
         if (evaluator instanceof WindowClassificationPerformanceEvaluator) {
@@ -196,20 +212,9 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
         }
         //File for output predictions
         File outputPredictionFile = this.outputPredictionFileOption.getFile();
-        PrintStream outputPredictionResultStream = null;
+        PredictionSink outputPredictionSink = null;
         if (outputPredictionFile != null) {
-            try {
-                if (outputPredictionFile.exists()) {
-                    outputPredictionResultStream = new PrintStream(
-                            new FileOutputStream(outputPredictionFile, true), true);
-                } else {
-                    outputPredictionResultStream = new PrintStream(
-                            new FileOutputStream(outputPredictionFile), true);
-                }
-            } catch (Exception ex) {
-                throw new RuntimeException(
-                        "Unable to open prediction result file: " + outputPredictionFile, ex);
-            }
+            outputPredictionSink = PredictionSink.open(outputPredictionFile);
         }
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
@@ -223,20 +228,23 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
             
             instancesProcessed++;
             Example currentInst = stream.nextInstance();
+            // the instance is used for training at step instancesProcessed + instanceDelay
+            long instanceDelay = maxDelay == delay ? delay
+                    : delay + delayRandom.nextInt(maxDelay - delay + 1);
             
             if(instancesProcessed <= this.initialWindowSizeOption.getValue()) {
                 if(this.trainOnInitialWindowOption.isSet()) {
                     learner.trainOnInstance(currentInst);
                 }
-                else if((this.initialWindowSizeOption.getValue() - instancesProcessed) < this.delayLengthOption.getValue()) {
-                    this.trainInstances.addLast(currentInst);
+                else if((this.initialWindowSizeOption.getValue() - instancesProcessed) < instanceDelay) {
+                    this.trainInstances.add(currentInst, instancesProcessed + instanceDelay);
                 }
             }
             else {
-                this.trainInstances.addLast(currentInst);
+                this.trainInstances.add(currentInst, instancesProcessed + instanceDelay);
 
-                if(this.delayLengthOption.getValue() < this.trainInstances.size()) {
-                    if(this.trainInBatches.isSet()) {
+                if(this.trainInstances.isReleased(instancesProcessed)) {
+                    if(this.trainInBatches.isSet() && maxDelay == delay) {
                         // Do not train on the latest instance, otherwise
                         // it would train on k+1 instances
                         while(this.trainInstances.size() > 1) {
@@ -245,8 +253,10 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
                         }
                     }
                     else {
-                        Example trainInst = this.trainInstances.removeFirst();
-                        learner.trainOnInstance(trainInst);
+                        while(this.trainInstances.isReleased(instancesProcessed)) {
+                            Example trainInst = this.trainInstances.removeFirst();
+                            learner.trainOnInstance(trainInst);
+                        }
                     }
                 }
 
@@ -257,15 +267,12 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
                 testInstance.setClassValue(0.0);
           
                 double[] prediction = learner.getVotesForInstance(testInst);
-    //          reinstate the testInstance as it is used in evaluator.addResult
-                testInstance = ((Instance) currentInst.getData()).copy();
-                testInst = new InstanceExample(testInstance);
+    //          the labelled instance is used in evaluator.addResult
+                testInst = currentInst;
 
                 // Output prediction
-                if (outputPredictionFile != null) {
-                    int trueClass = (int) ((Instance) currentInst.getData()).classValue();
-                    outputPredictionResultStream.println(Utils.maxIndex(prediction) + "," + (
-                     ((Instance) testInst.getData()).classIsMissing() == true ? " ? " : trueClass));
+                if (outputPredictionSink != null) {
+                    outputPredictionSink.writeVotes(prediction, (Instance) testInst.getData());
                 }
                 evaluator.addResult(testInst, prediction);
                 
@@ -304,6 +311,9 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
                 }
                 if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
                     if (monitor.taskShouldAbort()) {
+                        if (outputPredictionSink != null) {
+                            outputPredictionSink.close();
+                        }
                         return null;
                     }
                     long estimatedRemainingInstances = stream.estimatedRemainingInstances();
@@ -328,8 +338,8 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
         if (immediateResultStream != null) {
             immediateResultStream.close();
         }
-        if (outputPredictionResultStream != null) {
-            outputPredictionResultStream.close();
+        if (outputPredictionSink != null) {
+            outputPredictionSink.close();
         }
         return learningCurve;
     }
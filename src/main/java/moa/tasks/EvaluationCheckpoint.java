@@ -0,0 +1,207 @@
+/*
+ *    EvaluationCheckpoint.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPOutputStream;
+
+import moa.core.SerializeUtils;
+import moa.evaluation.LearningCurve;
+import moa.evaluation.LearningPerformanceEvaluator;
+import moa.evaluation.ModelCostMeter;
+import moa.learners.Learner;
+
+/**
+ * State of a prequential evaluation at a sample point, from which the
+ * evaluation can be resumed: the learner, the evaluator, the learning curve,
+ * the cost of the model, the number of instances processed and the lengths
+ * of the output files.
+ *
+ * <p>The checkpoint is serialized by the evaluation thread, which is the
+ * only time the evaluation waits, then compressed and written by a
+ * {@link Writer} in another thread, to a temporary file renamed over the
+ * previous checkpoint, so that a crash while writing leaves the previous
+ * checkpoint intact. The file can be read with
+ * {@link SerializeUtils#readFromFile(File)}.</p>
+ *
+ * <p>The position in the stream is the number of instances processed: the
+ * stream is restarted and that many instances are skipped on resume, which
+ * reproduces the state of file readers as well as of random generators.</p>
+ *
+ * <p>Only {@link EvaluatePrequential} takes checkpoints. The state of
+ * EvaluatePrequentialDelayed (the examples waiting for their label) and of
+ * EvaluatePrequentialCV (a learner and an evaluator per fold) does not fit
+ * in a checkpoint of one learner and one evaluator.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class EvaluationCheckpoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public final Learner learner;
+
+    public final LearningPerformanceEvaluator evaluator;
+
+    public final LearningCurve learningCurve;
+
+    public final long instancesProcessed;
+
+    // CPU nanoseconds of evaluation
+    public final long evaluationTime;
+
+    public final ModelCostMeter modelCost;
+
+    // Length of the dump file, -1 if none
+    public final long dumpFileLength;
+
+    // Length of the prediction file before the evaluation, -1 if none
+    public final long predictionFileStart;
+
+    public EvaluationCheckpoint(Learner learner,
+            LearningPerformanceEvaluator evaluator, LearningCurve learningCurve,
+            long instancesProcessed, long evaluationTime, ModelCostMeter modelCost,
+            long dumpFileLength, long predictionFileStart) {
+        this.learner = learner;
+        this.evaluator = evaluator;
+        this.learningCurve = learningCurve;
+        this.instancesProcessed = instancesProcessed;
+        this.evaluationTime = evaluationTime;
+        this.modelCost = modelCost;
+        this.dumpFileLength = dumpFileLength;
+        this.predictionFileStart = predictionFileStart;
+    }
+
+    /** Serializes the checkpoint, the snapshot handed to a {@link Writer}. */
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(this);
+            out.close();
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed serializing the checkpoint.", ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static EvaluationCheckpoint readFromFile(File file) {
+        try {
+            return (EvaluationCheckpoint) SerializeUtils.readFromFile(file);
+        } catch (IOException | ClassNotFoundException ex) {
+            throw new RuntimeException("Unable to read checkpoint: " + file, ex);
+        }
+    }
+
+    /** Truncates the file to its length at the checkpoint. */
+    public static void truncate(File file, long length) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() < length) {
+                throw new RuntimeException("File shorter than at the checkpoint: " + file);
+            }
+            raf.setLength(length);
+        } catch (IOException ex) {
+            throw new RuntimeException("Unable to truncate: " + file, ex);
+        }
+    }
+
+    /**
+     * Writes checkpoints in another thread, one at a time. A failure is
+     * reported by the next call.
+     */
+    public static class Writer {
+
+        protected final File file;
+
+        protected volatile Thread thread;
+
+        protected volatile RuntimeException error;
+
+        public Writer(File file) {
+            this.file = file;
+        }
+
+        /** Gets whether a checkpoint is being written. */
+        public boolean isWriting() {
+            return this.thread != null && this.thread.isAlive();
+        }
+
+        /**
+         * Writes the serialized checkpoint, after the previous one is written.
+         */
+        public void write(final byte[] snapshot) {
+            waitForWrite();
+            this.thread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        writeToFile(snapshot);
+                    } catch (RuntimeException e) {
+                        Writer.this.error = e;
+                    }
+                }
+            }, "Checkpoint writer");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        // Runs in the writer thread
+        protected void writeToFile(byte[] snapshot) {
+            File tmpFile = new File(this.file.getPath() + ".tmp");
+            try {
+                OutputStream out = new GZIPOutputStream(new FileOutputStream(tmpFile));
+                out.write(snapshot);
+                out.close();
+                try {
+                    Files.move(tmpFile.toPath(), this.file.toPath(),
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException ex) {
+                    Files.move(tmpFile.toPath(), this.file.toPath(),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException ex) {
+                throw new RuntimeException("Failed writing checkpoint: " + this.file, ex);
+            }
+        }
+
+        /** Waits until the last checkpoint is written. */
+        public void waitForWrite() {
+            if (this.thread != null) {
+                try {
+                    this.thread.join();
+                } catch (InterruptedException ie) {
+                    throw new RuntimeException("Interrupted while writing checkpoint.", ie);
+                }
+                this.thread = null;
+            }
+            if (this.error != null) {
+                throw this.error;
+            }
+        }
+    }
+}
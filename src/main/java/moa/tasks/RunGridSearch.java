@@ -0,0 +1,508 @@
+/*
+ *    RunGridSearch.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import com.github.javacliparser.FileOption;
+import com.github.javacliparser.IntOption;
+import com.github.javacliparser.Option;
+import com.github.javacliparser.Options;
+import com.github.javacliparser.StringOption;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import moa.core.Measurement;
+import moa.core.ObjectRepository;
+import moa.evaluation.LearningCurve;
+import moa.evaluation.LearningEvaluation;
+import moa.options.ClassOption;
+import moa.options.OptionHandler;
+import moa.streams.CachedInstancesStream;
+import moa.streams.ExampleStream;
+
+/**
+ * Task for running a task with every configuration of a grid of parameters,
+ * several configurations at the same time.
+ *
+ * <p>The grid (<code>-g</code>) lists the options to vary, separated by
+ * semicolons, with their values: a list separated by commas or a range
+ * <code>first:last:step</code>. Options are given by name or by letter,
+ * options of the class options of the task being reached with a path, e.g.
+ * <code>l/s=50,100;l/a=2:10:2</code> varies the options <code>-s</code> and
+ * <code>-a</code> of the learner of the task. All the configurations are
+ * run, or <code>-n</code> of them drawn at random.</p>
+ *
+ * <p>The configurations are run by a pool of <code>-j</code> jobs, fewer if
+ * the memory of the JVM cannot hold <code>-m</code> megabytes per job. With
+ * <code>-c</code>, the first instances of the stream of the task are read
+ * once and shared by the configurations in memory, which requires the
+ * learners not to modify their training instances; a binary cache file
+ * (BinaryFileStream) can also be used as stream of the task, to avoid
+ * parsing the stream in every configuration. The final measurements of every
+ * configuration are appended to the result file as soon as they are
+ * available, and the whole table, sorted by configuration, is the result of
+ * the task. The task to run should not write to a dump file, as all the
+ * configurations would append to it.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class RunGridSearch extends AuxiliarMainTask {
+
+    @Override
+    public String getPurposeString() {
+        return "Runs a task with every configuration of a grid of parameters, in parallel.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public ClassOption taskOption = new ClassOption("task", 't',
+            "Task to do.", Task.class, "EvaluatePrequential -l trees.HoeffdingTree -i 1000000");
+
+    public StringOption gridOption = new StringOption("grid", 'g',
+            "Options to vary, e.g. l/g=100,200;l/c=0.01:0.05:0.01 (options of the learner -l of the task).",
+            "l/g=100:300:100");
+
+    public IntOption numRandomConfigurationsOption = new IntOption("numRandomConfigurations", 'n',
+            "Number of configurations drawn at random from the grid (0 = all the configurations).",
+            0, 0, Integer.MAX_VALUE);
+
+    public IntOption randomSeedOption = new IntOption("randomSeed", 'r',
+            "Seed for the random draw of the configurations.", 1);
+
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Number of configurations run at the same time (-1 = as many as processors).",
+            -1, -1, Integer.MAX_VALUE);
+
+    public IntOption memoryPerJobOption = new IntOption("memoryPerJob", 'm',
+            "Megabytes of memory needed by a configuration, to limit the number of jobs (0 = no limit).",
+            0, 0, Integer.MAX_VALUE);
+
+    public IntOption cacheSizeOption = new IntOption("cacheSize", 'c',
+            "Number of instances of the stream of the task read once and shared in memory (0 = no cache).",
+            0, 0, Integer.MAX_VALUE);
+
+    public FileOption resultFileOption = new FileOption("resultFile", 'o',
+            "File to append the results of the configurations to.", null, "csv", true);
+
+    protected transient volatile boolean aborted;
+
+    @Override
+    public Class<?> getTaskResultType() {
+        return String.class;
+    }
+
+    /** Option to vary and its values. */
+    protected static class Parameter {
+
+        protected final String path;
+
+        protected final String[] values;
+
+        public Parameter(String path, String[] values) {
+            this.path = path;
+            this.values = values;
+        }
+    }
+
+    /** Final measurements of a configuration, null if it failed. */
+    protected static class Result {
+
+        protected final int configuration;
+
+        protected final Measurement[] measurements;
+
+        public Result(int configuration, Measurement[] measurements) {
+            this.configuration = configuration;
+            this.measurements = measurements;
+        }
+    }
+
+    @Override
+    protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+        final Task baseTask = (Task) getPreparedClassOption(this.taskOption);
+        final Parameter[] parameters = parseGrid(this.gridOption.getValue());
+        final List<int[]> configurations = configurations(parameters);
+
+        Instances cache = null;
+        if (this.cacheSizeOption.getValue() > 0) {
+            cache = readCache(baseTask, monitor, repository);
+            if (cache == null) {
+                return null;
+            }
+        }
+
+        int numberOfJobs = this.numberOfJobsOption.getValue() < 1
+                ? Runtime.getRuntime().availableProcessors() : this.numberOfJobsOption.getValue();
+        if (this.memoryPerJobOption.getValue() > 0) {
+            long maxJobs = Runtime.getRuntime().maxMemory() / (this.memoryPerJobOption.getValue() * 1024L * 1024L);
+            numberOfJobs = (int) Math.max(1, Math.min(numberOfJobs, maxJobs));
+        }
+        monitor.setCurrentActivity("Running " + configurations.size() + " configurations in "
+                + numberOfJobs + " jobs...", -1.0);
+
+        PrintStream resultStream = null;
+        File resultFile = this.resultFileOption.getFile();
+        if (resultFile != null) {
+            try {
+                resultStream = new PrintStream(new FileOutputStream(resultFile, true), true);
+            } catch (Exception ex) {
+                throw new RuntimeException(
+                        "Unable to open result file: " + resultFile, ex);
+            }
+        }
+
+        this.aborted = false;
+        final TaskMonitor jobMonitor = new NullMonitor() {
+
+            @Override
+            public boolean taskShouldAbort() {
+                return RunGridSearch.this.aborted;
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfJobs, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Grid search job");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        CompletionService<Result> completion = new ExecutorCompletionService<Result>(executor);
+        final Instances sharedCache = cache;
+        final ObjectRepository sharedRepository = repository;
+        for (int i = 0; i < configurations.size(); i++) {
+            final int configuration = i;
+            completion.submit(new Callable<Result>() {
+
+                @Override
+                public Result call() {
+                    return runConfiguration(baseTask, parameters, configuration,
+                            configurations.get(configuration), sharedCache, jobMonitor, sharedRepository);
+                }
+            });
+        }
+
+        String[] header = null;
+        Map<Integer, Result> results = new TreeMap<Integer, Result>();
+        // Results not written to the result file, as failures come before the header
+        List<Result> unwritten = new ArrayList<Result>();
+        try {
+            while (results.size() < configurations.size()) {
+                Future<Result> future = completion.poll(100, TimeUnit.MILLISECONDS);
+                if (monitor.taskShouldAbort()) {
+                    this.aborted = true;
+                    return null;
+                }
+                if (future == null) {
+                    continue;
+                }
+                Result result = future.get();
+                results.put(result.configuration, result);
+                unwritten.add(result);
+                if (header == null && result.measurements != null) {
+                    header = new String[result.measurements.length];
+                    for (int i = 0; i < header.length; i++) {
+                        header[i] = result.measurements[i].getName();
+                    }
+                    if (resultStream != null) {
+                        resultStream.println(headerToString(parameters, header));
+                    }
+                }
+                if (header != null) {
+                    writeRows(resultStream, parameters, configurations, header, unwritten);
+                }
+                monitor.setCurrentActivityDescription("Running configurations, "
+                        + results.size() + " of " + configurations.size() + " done...");
+                monitor.setCurrentActivityFractionComplete((double) results.size() / configurations.size());
+            }
+            if (header == null) {
+                // every configuration failed
+                header = new String[0];
+                if (resultStream != null) {
+                    resultStream.println(headerToString(parameters, header));
+                }
+                writeRows(resultStream, parameters, configurations, header, unwritten);
+            }
+        } catch (InterruptedException ie) {
+            throw new RuntimeException("Interrupted while waiting for the configurations.", ie);
+        } catch (ExecutionException ee) {
+            throw new RuntimeException("Failed running a configuration.", ee.getCause());
+        } finally {
+            executor.shutdownNow();
+            if (resultStream != null) {
+                resultStream.close();
+            }
+        }
+
+        StringBuilder table = new StringBuilder();
+        table.append(headerToString(parameters, header));
+        for (Result result : results.values()) {
+            table.append('\n').append(rowToString(parameters, configurations.get(result.configuration),
+                    result.configuration, header, result.measurements));
+        }
+        return table.toString();
+    }
+
+    // Appends the rows of the results to the result file, if any, and clears them
+    protected static void writeRows(PrintStream resultStream, Parameter[] parameters,
+            List<int[]> configurations, String[] header, List<Result> results) {
+        if (resultStream != null) {
+            for (Result result : results) {
+                resultStream.println(rowToString(parameters, configurations.get(result.configuration),
+                        result.configuration, header, result.measurements));
+            }
+        }
+        results.clear();
+    }
+
+    // Runs in a job
+    protected Result runConfiguration(Task baseTask, Parameter[] parameters, int configuration,
+            int[] valueIndices, Instances cache, TaskMonitor monitor, ObjectRepository repository) {
+        if (monitor.taskShouldAbort()) {
+            return new Result(configuration, null);
+        }
+        try {
+            Task task = (Task) baseTask.copy();
+            for (int p = 0; p < parameters.length; p++) {
+                findOption((OptionHandler) task, parameters[p].path).setValueViaCLIString(
+                        parameters[p].values[valueIndices[p]]);
+            }
+            if (cache != null) {
+                streamOption(task).setCurrentObject(new CachedInstancesStream(cache));
+            }
+            return new Result(configuration, finalMeasurements(task.doTask(monitor, repository)));
+        } catch (RuntimeException e) {
+            System.err.println("Configuration " + configuration + " failed:");
+            e.printStackTrace();
+            return new Result(configuration, null);
+        }
+    }
+
+    /**
+     * Reads the first instances of the stream of the task, returns null if
+     * the task was aborted meanwhile.
+     */
+    protected Instances readCache(Task task, TaskMonitor monitor, ObjectRepository repository) {
+        ClassOption option = streamOption(task);
+        ExampleStream stream;
+        try {
+            stream = (ExampleStream) ClassOption.cliStringToObject(option.getValueAsCLIString(),
+                    ExampleStream.class, null);
+        } catch (Exception ex) {
+            throw new RuntimeException("Problems with the stream of the task.", ex);
+        }
+        if (stream instanceof OptionHandler) {
+            ((OptionHandler) stream).prepareForUse(monitor, repository);
+        }
+        monitor.setCurrentActivity("Caching instances...", -1.0);
+        Instances cache = new Instances(stream.getHeader(), 0);
+        while ((cache.numInstances() < this.cacheSizeOption.getValue())
+                && stream.hasMoreInstances()) {
+            cache.add((Instance) stream.nextInstance().getData());
+            if (cache.numInstances() % INSTANCES_BETWEEN_MONITOR_UPDATES == 0
+                    && monitor.taskShouldAbort()) {
+                return null;
+            }
+        }
+        return cache;
+    }
+
+    protected static ClassOption streamOption(Task task) {
+        Option option = task instanceof OptionHandler
+                ? ((OptionHandler) task).getOptions().getOption("stream") : null;
+        if (!(option instanceof ClassOption)) {
+            throw new IllegalArgumentException("Task " + task.getClass().getSimpleName()
+                    + " has no stream to cache.");
+        }
+        return (ClassOption) option;
+    }
+
+    /**
+     * Returns the option at the path, e.g. l/s for the option -s of the
+     * learner -l of the task.
+     */
+    protected static Option findOption(OptionHandler handler, String path) {
+        String[] names = path.split("/");
+        Options options = handler.getOptions();
+        Option option = null;
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                Object object = option instanceof ClassOption
+                        ? ((ClassOption) option).getPreMaterializedObject() : null;
+                if (!(object instanceof OptionHandler)) {
+                    throw new IllegalArgumentException("Option " + names[i - 1] + " of " + path
+                            + " has no options.");
+                }
+                options = ((OptionHandler) object).getOptions();
+            }
+            String name = names[i].trim();
+            option = name.length() == 1 ? options.getOption(name.charAt(0)) : options.getOption(name);
+            if (option == null) {
+                throw new IllegalArgumentException("Unknown option " + name + " in " + path + ".");
+            }
+        }
+        return option;
+    }
+
+    protected static Parameter[] parseGrid(String grid) {
+        List<Parameter> parameters = new ArrayList<Parameter>();
+        for (String entry : grid.split(";")) {
+            entry = entry.trim();
+            if (entry.length() == 0) {
+                continue;
+            }
+            int equals = entry.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Expected option=values in the grid: " + entry);
+            }
+            parameters.add(new Parameter(entry.substring(0, equals).trim(),
+                    parseValues(entry.substring(equals + 1).trim())));
+        }
+        return parameters.toArray(new Parameter[parameters.size()]);
+    }
+
+    // A list separated by commas or a range first:last:step
+    protected static String[] parseValues(String values) {
+        String[] range = values.split(":");
+        if (range.length != 3) {
+            String[] list = values.split(",");
+            for (int i = 0; i < list.length; i++) {
+                list[i] = list[i].trim();
+            }
+            return list;
+        }
+        BigDecimal first = new BigDecimal(range[0].trim());
+        BigDecimal last = new BigDecimal(range[1].trim());
+        BigDecimal step = new BigDecimal(range[2].trim());
+        if (step.signum() <= 0) {
+            throw new IllegalArgumentException("The step of a range must be positive: " + values);
+        }
+        List<String> list = new ArrayList<String>();
+        for (BigDecimal value = first; value.compareTo(last) <= 0; value = value.add(step)) {
+            list.add(value.toPlainString());
+        }
+        return list.toArray(new String[list.size()]);
+    }
+
+    /**
+     * Returns the indices of the values of every configuration, all of them
+     * or some drawn at random.
+     */
+    protected List<int[]> configurations(Parameter[] parameters) {
+        long numConfigurations = 1;
+        for (Parameter parameter : parameters) {
+            numConfigurations *= parameter.values.length;
+        }
+        List<Long> indices = new ArrayList<Long>();
+        int numRandom = this.numRandomConfigurationsOption.getValue();
+        if (numRandom > 0 && numRandom < numConfigurations) {
+            Random random = new Random(this.randomSeedOption.getValue());
+            Set<Long> drawn = new LinkedHashSet<Long>();
+            while (drawn.size() < numRandom) {
+                drawn.add((long) (random.nextDouble() * numConfigurations));
+            }
+            indices.addAll(drawn);
+        } else {
+            if (numConfigurations > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many configurations in the grid: " + numConfigurations);
+            }
+            for (long i = 0; i < numConfigurations; i++) {
+                indices.add(i);
+            }
+        }
+        List<int[]> configurations = new ArrayList<int[]>(indices.size());
+        for (long index : indices) {
+            // the last parameter varies fastest
+            int[] valueIndices = new int[parameters.length];
+            for (int p = parameters.length - 1; p >= 0; p--) {
+                valueIndices[p] = (int) (index % parameters[p].values.length);
+                index /= parameters[p].values.length;
+            }
+            configurations.add(valueIndices);
+        }
+        return configurations;
+    }
+
+    /** Returns the measurements of the last entry of a learning curve or of an evaluation. */
+    protected static Measurement[] finalMeasurements(Object result) {
+        if (result instanceof LearningEvaluation) {
+            return ((LearningEvaluation) result).getMeasurements();
+        }
+        if (result instanceof LearningCurve && ((LearningCurve) result).numEntries() > 0) {
+            LearningCurve curve = (LearningCurve) result;
+            Measurement[] measurements = new Measurement[curve.numMeasurements()];
+            for (int i = 0; i < measurements.length; i++) {
+                measurements[i] = new Measurement(curve.getMeasurementName(i),
+                        curve.getMeasurement(curve.numEntries() - 1, i));
+            }
+            return measurements;
+        }
+        return null;
+    }
+
+    protected static String headerToString(Parameter[] parameters, String[] header) {
+        StringBuilder sb = new StringBuilder("configuration");
+        for (Parameter parameter : parameters) {
+            sb.append(',').append(parameter.path);
+        }
+        for (String name : header) {
+            sb.append(',').append(name);
+        }
+        return sb.toString();
+    }
+
+    // Measurements in the order of the header, ? if missing
+    protected static String rowToString(Parameter[] parameters, int[] valueIndices,
+            int configuration, String[] header, Measurement[] measurements) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(configuration);
+        for (int p = 0; p < parameters.length; p++) {
+            sb.append(',').append(parameters[p].values[valueIndices[p]]);
+        }
+        for (String name : header) {
+            Measurement measurement = measurements != null
+                    ? Measurement.getMeasurementNamed(name, measurements) : null;
+            sb.append(',');
+            if (measurement == null || Double.isNaN(measurement.getValue())) {
+                sb.append('?');
+            } else {
+                sb.append(Double.toString(measurement.getValue()));
+            }
+        }
+        return sb.toString();
+    }
+}
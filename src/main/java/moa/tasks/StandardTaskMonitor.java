@@ -19,6 +19,8 @@
  */
 package moa.tasks;
 
+import moa.core.Measurement;
+
 /**
  * Class that represents a standard task monitor.
  *
@@ -43,6 +45,21 @@ public class StandardTaskMonitor implements TaskMonitor {
 
     protected volatile ResultPreviewListener resultPreviewer = null;
 
+    // Nanoseconds over which the number of instances per second is measured
+    protected static final long THROUGHPUT_INTERVAL = 1000000000L;
+
+    protected volatile long instancesProcessed = 0;
+
+    protected volatile double instancesPerSecond = 0.0;
+
+    protected long throughputStartInstances = -1;
+
+    protected long throughputStartTime;
+
+    protected volatile Measurement[] latestMeasurements = null;
+
+    protected volatile long modelByteSize = -1;
+
     @Override
     public void setCurrentActivity(String activityDescription,
             double fracComplete) {
@@ -142,4 +159,49 @@ public class StandardTaskMonitor implements TaskMonitor {
         }
         this.resultPreviewer = null;
     }
+
+    @Override
+    public void setInstancesProcessed(long instancesProcessed) {
+        this.instancesProcessed = instancesProcessed;
+        long time = System.nanoTime();
+        if (this.throughputStartInstances < 0 || instancesProcessed < this.throughputStartInstances) {
+            this.throughputStartInstances = instancesProcessed;
+            this.throughputStartTime = time;
+        } else if (time - this.throughputStartTime >= THROUGHPUT_INTERVAL) {
+            this.instancesPerSecond = (instancesProcessed - this.throughputStartInstances)
+                    * 1.0e9 / (time - this.throughputStartTime);
+            this.throughputStartInstances = instancesProcessed;
+            this.throughputStartTime = time;
+        }
+    }
+
+    @Override
+    public long getInstancesProcessed() {
+        return this.instancesProcessed;
+    }
+
+    @Override
+    public double getInstancesPerSecond() {
+        return this.instancesPerSecond;
+    }
+
+    @Override
+    public void setLatestMeasurements(Measurement[] measurements) {
+        this.latestMeasurements = measurements;
+    }
+
+    @Override
+    public Measurement[] getLatestMeasurements() {
+        return this.latestMeasurements;
+    }
+
+    @Override
+    public void setModelByteSize(long modelByteSize) {
+        this.modelByteSize = modelByteSize;
+    }
+
+    @Override
+    public long getModelByteSize() {
+        return this.modelByteSize;
+    }
 }
@@ -0,0 +1,231 @@
+/*
+ *    TaskMetrics.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import moa.core.Measurement;
+import moa.core.TimingUtils;
+import moa.options.OptionHandler;
+
+/**
+ * Metrics of a task run by a {@link TaskThread}, or directly in the calling
+ * thread, registered in the platform MBean server while the task runs, under
+ * the name moa:type=Task,name=&lt;task class&gt;,id=&lt;thread id&gt;, so
+ * that they can be read by jconsole or scraped by a JMX collector.
+ *
+ * <p>Status, activity and CPU time are available for every task. The number
+ * of instances processed, the latest measurements and the size of the model
+ * are the ones the task gives to its {@link TaskMonitor}.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class TaskMetrics implements TaskMetricsMXBean {
+
+    public static final String DOMAIN = "moa";
+
+    protected final Task task;
+
+    protected final TaskMonitor monitor;
+
+    /** The thread running the task, null if it runs in the calling thread. */
+    protected final TaskThread taskThread;
+
+    protected final long threadId;
+
+    protected final long startCpuTime;
+
+    protected final long startTime;
+
+    protected final long startGcCount;
+
+    protected final long startGcTime;
+
+    public TaskMetrics(TaskThread taskThread) {
+        this(taskThread.getTask(), taskThread.taskMonitor, taskThread, taskThread.getId());
+    }
+
+    /**
+     * Creates the metrics of a task run directly in the current thread.
+     *
+     * @param task the task
+     * @param monitor the monitor given to the task
+     */
+    public TaskMetrics(Task task, TaskMonitor monitor) {
+        this(task, monitor, null, Thread.currentThread().getId());
+    }
+
+    protected TaskMetrics(Task task, TaskMonitor monitor, TaskThread taskThread, long threadId) {
+        this.task = task;
+        this.monitor = monitor;
+        this.taskThread = taskThread;
+        this.threadId = threadId;
+        TimingUtils.enablePreciseTiming();
+        this.startCpuTime = TimingUtils.getNanoCPUTimeOfThread(threadId);
+        this.startTime = System.nanoTime();
+        this.startGcCount = totalGcCount();
+        this.startGcTime = totalGcTime();
+    }
+
+    /**
+     * Registers the metrics of the task thread in the platform MBean server.
+     *
+     * @return the name of the MBean, null if it could not be registered
+     */
+    public static ObjectName register(TaskThread taskThread) {
+        return register(new TaskMetrics(taskThread));
+    }
+
+    /**
+     * Registers the metrics of a task run directly in the current thread,
+     * as DoTask does when the status output is suppressed.
+     *
+     * @return the name of the MBean, null if it could not be registered
+     */
+    public static ObjectName register(Task task, TaskMonitor monitor) {
+        return register(new TaskMetrics(task, monitor));
+    }
+
+    protected static ObjectName register(TaskMetrics metrics) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=Task,name="
+                    + ObjectName.quote(metrics.task.getClass().getSimpleName())
+                    + ",id=" + metrics.threadId);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+            return name;
+        } catch (JMException | SecurityException e) {
+            System.err.println("Unable to register the task metrics: " + e);
+            return null;
+        }
+    }
+
+    public static void unregister(ObjectName name) {
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException e) {
+                // already unregistered
+            }
+        }
+    }
+
+    protected TaskMonitor getMonitor() {
+        return this.monitor;
+    }
+
+    @Override
+    public String getTask() {
+        return this.task instanceof OptionHandler
+                ? ((OptionHandler) this.task).getCLICreationString(Task.class) : this.task.toString();
+    }
+
+    @Override
+    public String getStatus() {
+        if (this.taskThread != null) {
+            return this.taskThread.getCurrentStatusString();
+        }
+        // unregistered as soon as the task ends
+        return this.monitor.isCancelled() ? "cancelling" : "running";
+    }
+
+    @Override
+    public String getCurrentActivity() {
+        return this.taskThread != null ? this.taskThread.getCurrentActivityString()
+                : this.monitor.getCurrentActivityDescription();
+    }
+
+    @Override
+    public double getFractionComplete() {
+        return this.taskThread != null ? this.taskThread.getCurrentActivityFracComplete()
+                : this.monitor.getCurrentActivityFractionComplete();
+    }
+
+    @Override
+    public double getCpuSecondsElapsed() {
+        if (this.taskThread != null) {
+            return this.taskThread.getCPUSecondsElapsed();
+        }
+        double secondsElapsed = TimingUtils.nanoTimeToSeconds(
+                TimingUtils.getNanoCPUTimeOfThread(this.threadId) - this.startCpuTime);
+        return secondsElapsed > 0.0 ? secondsElapsed : 0.0;
+    }
+
+    @Override
+    public long getInstancesProcessed() {
+        return getMonitor().getInstancesProcessed();
+    }
+
+    @Override
+    public double getInstancesPerSecond() {
+        return getMonitor().getInstancesPerSecond();
+    }
+
+    @Override
+    public Map<String, Double> getLatestMeasurements() {
+        Map<String, Double> values = new LinkedHashMap<String, Double>();
+        Measurement[] measurements = getMonitor().getLatestMeasurements();
+        if (measurements != null) {
+            for (Measurement measurement : measurements) {
+                values.put(measurement.getName(), measurement.getValue());
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public long getModelByteSize() {
+        return getMonitor().getModelByteSize();
+    }
+
+    @Override
+    public long getGcCount() {
+        return totalGcCount() - this.startGcCount;
+    }
+
+    @Override
+    public long getGcTimeMillis() {
+        return totalGcTime() - this.startGcTime;
+    }
+
+    @Override
+    public double getGcTimeFraction() {
+        double elapsedMillis = (System.nanoTime() - this.startTime) / 1.0e6;
+        return elapsedMillis > 0.0 ? getGcTimeMillis() / elapsedMillis : 0.0;
+    }
+
+    protected static long totalGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    protected static long totalGcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ *    TaskMetricsMXBean.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import java.util.Map;
+
+/**
+ * Management interface of a running task, published over JMX by
+ * {@link TaskMetrics}.
+ *
+ * @version $Revision: 1 $
+ */
+public interface TaskMetricsMXBean {
+
+    /** Gets the command line of the task. */
+    public String getTask();
+
+    /** Gets the status of the task: running, paused, completed... */
+    public String getStatus();
+
+    /** Gets the description of the current activity of the task. */
+    public String getCurrentActivity();
+
+    /** Gets the fraction of the task done, -1 if unknown. */
+    public double getFractionComplete();
+
+    /** Gets the CPU seconds used by the thread of the task. */
+    public double getCpuSecondsElapsed();
+
+    /** Gets the number of instances processed. */
+    public long getInstancesProcessed();
+
+    /** Gets the number of instances processed per second lately. */
+    public double getInstancesPerSecond();
+
+    /** Gets the latest measurements of the evaluation, by name. */
+    public Map<String, Double> getLatestMeasurements();
+
+    /** Gets the size of the model in bytes, -1 if unknown. */
+    public long getModelByteSize();
+
+    /** Gets the number of garbage collections since the task started. */
+    public long getGcCount();
+
+    /** Gets the milliseconds spent collecting garbage since the task started. */
+    public long getGcTimeMillis();
+
+    /** Gets the fraction of the time since the task started spent collecting garbage. */
+    public double getGcTimeFraction();
+}
@@ -19,6 +19,8 @@
  */
 package moa.tasks;
 
+import moa.core.Measurement;
+
 /**
  * Interface representing a task monitor. 
  *
@@ -136,4 +138,66 @@ public interface TaskMonitor {
      * @return the result to preview
      */
     public Object getLatestResultPreview();
+
+    /**
+     * Sets the number of instances processed by the task. Monitors that do
+     * not keep track of it ignore it.
+     *
+     * @param instancesProcessed the number of instances processed
+     */
+    public default void setInstancesProcessed(long instancesProcessed) {
+    }
+
+    /**
+     * Gets the number of instances processed by the task.
+     *
+     * @return the number of instances processed
+     */
+    public default long getInstancesProcessed() {
+        return 0;
+    }
+
+    /**
+     * Gets the number of instances processed per second, over the last
+     * second or so.
+     *
+     * @return the number of instances processed per second
+     */
+    public default double getInstancesPerSecond() {
+        return 0.0;
+    }
+
+    /**
+     * Sets the latest measurements of the evaluation.
+     *
+     * @param measurements the latest measurements
+     */
+    public default void setLatestMeasurements(Measurement[] measurements) {
+    }
+
+    /**
+     * Gets the latest measurements of the evaluation.
+     *
+     * @return the latest measurements, null if there are none
+     */
+    public default Measurement[] getLatestMeasurements() {
+        return null;
+    }
+
+    /**
+     * Sets the size in bytes of the model being learned.
+     *
+     * @param modelByteSize the size of the model in bytes
+     */
+    public default void setModelByteSize(long modelByteSize) {
+    }
+
+    /**
+     * Gets the size in bytes of the model being learned.
+     *
+     * @return the size of the model in bytes, -1 if unknown
+     */
+    public default long getModelByteSize() {
+        return -1;
+    }
 }
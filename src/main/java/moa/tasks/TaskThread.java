@@ -20,6 +20,7 @@
 package moa.tasks;
 
 import java.util.concurrent.CopyOnWriteArraySet;
+import javax.management.ObjectName;
 
 import moa.core.ObjectRepository;
 import moa.core.TimingUtils;
@@ -71,6 +72,7 @@ public class TaskThread extends Thread {
     public void run() {
         TimingUtils.enablePreciseTiming();
         this.taskStartTime = TimingUtils.getNanoCPUTimeOfThread(getId());
+        ObjectName metricsName = TaskMetrics.register(this);
         try {
             this.currentStatus = Status.RUNNING;
             this.finalResult = this.runningTask.doTask(this.taskMonitor,
@@ -80,6 +82,8 @@ public class TaskThread extends Thread {
         } catch (Throwable ex) {
             this.currentStatus = Status.FAILED;
             this.finalResult = new FailedTaskReport(ex);
+        } finally {
+            TaskMetrics.unregister(metricsName);
         }
         this.taskEndTime = TimingUtils.getNanoCPUTimeOfThread(getId());
         fireTaskCompleted();
@@ -0,0 +1,272 @@
+/*
+ *    WriteReducedStreamToFile.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
+import com.github.javacliparser.IntOption;
+import com.github.javacliparser.MultiChoiceOption;
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import moa.core.ObjectRepository;
+import moa.options.ClassOption;
+import moa.streams.BinaryFileWriter;
+import moa.streams.InstanceStream;
+import moa.streams.filters.StreamFilter;
+
+/**
+ * Task to reduce the dimensionality of a stream and write it to a file.
+ *
+ * <p>The reducer is a stream filter working on primitive arrays, such as
+ * RandomProjectionFilter (Gaussian or sparse random projection),
+ * HashingTrickFilter or HashingTrickFilterBinary. The reduced stream is written
+ * as ARFF or in the binary format of BinaryFileStream. For ARFF, the rows can
+ * be formatted by several threads, in batches that are written in order.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class WriteReducedStreamToFile extends AuxiliarMainTask {
+
+    @Override
+    public String getPurposeString() {
+        return "Reduces the dimensionality of a stream and outputs it to an ARFF or binary file.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final int BATCH_SIZE = 1000;
+
+    public ClassOption streamOption = new ClassOption("stream", 's',
+            "Stream to write.", InstanceStream.class,
+            "generators.RandomTreeGenerator");
+
+    public ClassOption reducerOption = new ClassOption("reducer", 'r',
+            "Filter reducing the dimensionality.", StreamFilter.class,
+            "RandomProjectionFilter");
+
+    public FileOption outputFileOption = new FileOption("outputFile", 'f',
+            "Destination file.", null, "arff", true);
+
+    public MultiChoiceOption formatOption = new MultiChoiceOption("format", 'o',
+            "Format of the output file.", new String[]{"arff", "binary"},
+            new String[]{"ARFF text file", "binary file read by BinaryFileStream"}, 0);
+
+    public IntOption maxInstancesOption = new IntOption("maxInstances", 'm',
+            "Maximum number of instances to write to file.", 10000000, 0,
+            Integer.MAX_VALUE);
+
+    public FlagOption suppressHeaderOption = new FlagOption("suppressHeader",
+            'h', "Suppress header from output (ARFF only).");
+
+    public IntOption numberOfThreadsOption = new IntOption("numberOfThreads", 't',
+            "Number of threads formatting the ARFF rows.", 1, 1, Integer.MAX_VALUE);
+
+    @Override
+    protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+        InstanceStream stream = (InstanceStream) getPreparedClassOption(this.streamOption);
+        StreamFilter reducer = (StreamFilter) getPreparedClassOption(this.reducerOption);
+        reducer.setInputStream(stream);
+        File destFile = this.outputFileOption.getFile();
+        if (destFile == null) {
+            throw new IllegalArgumentException("No destination file to write to.");
+        }
+        monitor.setCurrentActivity("Writing reduced stream to file...", -1.0);
+        long numWritten;
+        try {
+            if (this.formatOption.getChosenIndex() == 1) {
+                numWritten = writeBinary(reducer, destFile, monitor);
+            } else {
+                numWritten = writeArff(reducer, destFile, monitor);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(
+                    "Failed writing to file " + destFile, ex);
+        }
+        if (numWritten < 0) {
+            return null;
+        }
+        return "Reduced stream written to file " + destFile + " (" + numWritten + " instances)";
+    }
+
+    protected long writeBinary(StreamFilter reducer, File destFile, TaskMonitor monitor) throws IOException {
+        long numWritten = 0;
+        BinaryFileWriter writer = new BinaryFileWriter(destFile, reducer.getHeader(), 1 << 22);
+        try {
+            while ((numWritten < this.maxInstancesOption.getValue())
+                    && reducer.hasMoreInstances()) {
+                writer.write((Instance) reducer.nextInstance().getData());
+                numWritten++;
+                if (numWritten % INSTANCES_BETWEEN_MONITOR_UPDATES == 0
+                        && !updateMonitor(monitor, numWritten)) {
+                    return -1;
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        return numWritten;
+    }
+
+    protected long writeArff(StreamFilter reducer, File destFile, TaskMonitor monitor) throws IOException {
+        int numThreads = this.numberOfThreadsOption.getValue();
+        ExecutorService executor = numThreads > 1 ? Executors.newFixedThreadPool(numThreads) : null;
+        Deque<Future<String>> pending = new ArrayDeque<Future<String>>();
+        Writer w = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(destFile), StandardCharsets.UTF_8), 1 << 16);
+        long numWritten = 0;
+        try {
+            if (!this.suppressHeaderOption.isSet()) {
+                w.write(new Instances(reducer.getHeader(), 0).toString());
+                w.write("\n");
+            }
+            while ((numWritten < this.maxInstancesOption.getValue())
+                    && reducer.hasMoreInstances()) {
+                final Instance[] batch = new Instance[(int) Math.min(BATCH_SIZE,
+                        this.maxInstancesOption.getValue() - numWritten)];
+                int size = 0;
+                while (size < batch.length && reducer.hasMoreInstances()) {
+                    batch[size++] = (Instance) reducer.nextInstance().getData();
+                }
+                final int batchSize = size;
+                if (executor == null) {
+                    w.write(formatRows(batch, batchSize));
+                } else {
+                    pending.add(executor.submit(new Callable<String>() {
+
+                        @Override
+                        public String call() {
+                            return formatRows(batch, batchSize);
+                        }
+                    }));
+                    if (pending.size() >= 2 * numThreads) {
+                        w.write(pending.poll().get());
+                    }
+                }
+                long before = numWritten;
+                numWritten += batchSize;
+                if (numWritten / INSTANCES_BETWEEN_MONITOR_UPDATES > before / INSTANCES_BETWEEN_MONITOR_UPDATES
+                        && !updateMonitor(monitor, numWritten)) {
+                    return -1;
+                }
+            }
+            while (!pending.isEmpty()) {
+                w.write(pending.poll().get());
+            }
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while formatting rows.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed formatting rows.", e.getCause());
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            w.close();
+        }
+        return numWritten;
+    }
+
+    private boolean updateMonitor(TaskMonitor monitor, long numWritten) {
+        if (monitor.taskShouldAbort()) {
+            return false;
+        }
+        monitor.setCurrentActivityDescription("Writing reduced stream to file, "
+                + numWritten + " instances written...");
+        return true;
+    }
+
+    /**
+     * Formats the instances as ARFF rows, one per line.
+     */
+    public static String formatRows(Instance[] instances, int size) {
+        StringBuilder sb = new StringBuilder(size * 64);
+        for (int n = 0; n < size; n++) {
+            appendRow(sb, instances[n]);
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends the instance as an ARFF row, sparse ({index value, ...}) for
+     * sparse instances. The weight is appended if it is not 1.
+     */
+    public static void appendRow(StringBuilder sb, Instance instance) {
+        if (instance instanceof SparseInstance) {
+            sb.append('{');
+            for (int k = 0; k < instance.numValues(); k++) {
+                if (k > 0) {
+                    sb.append(',');
+                }
+                int index = instance.index(k);
+                sb.append(index).append(' ');
+                appendValue(sb, instance.attribute(index), instance.valueSparse(k));
+            }
+            sb.append('}');
+        } else {
+            for (int i = 0; i < instance.numAttributes(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                appendValue(sb, instance.attribute(i), instance.value(i));
+            }
+        }
+        if (instance.weight() != 1.0) {
+            sb.append(",{").append(instance.weight()).append('}');
+        }
+    }
+
+    protected static void appendValue(StringBuilder sb, Attribute attribute, double value) {
+        if (Double.isNaN(value)) {
+            sb.append('?');
+        } else if (attribute.isNominal()) {
+            String label = attribute.value((int) value);
+            if (label.indexOf(' ') >= 0 || label.indexOf(',') >= 0
+                    || label.indexOf('{') >= 0 || label.indexOf('}') >= 0) {
+                sb.append('\'').append(label.replace("'", "\\'")).append('\'');
+            } else {
+                sb.append(label);
+            }
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            sb.append((long) value);
+        } else {
+            sb.append(value);
+        }
+    }
+
+    @Override
+    public Class<?> getTaskResultType() {
+        return String.class;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *    WriteStreamToBinaryFile.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import com.github.javacliparser.FileOption;
+import com.github.javacliparser.IntOption;
+import java.io.File;
+import java.io.IOException;
+import moa.core.ObjectRepository;
+import moa.options.ClassOption;
+import moa.streams.BinaryFileWriter;
+import moa.streams.InstanceStream;
+
+/**
+ * Task to convert a stream into a binary cache file, to be replayed with
+ * <code>BinaryFileStream</code> without parsing.
+ *
+ * @version $Revision: 1 $
+ */
+public class WriteStreamToBinaryFile extends AuxiliarMainTask {
+
+    @Override
+    public String getPurposeString() {
+        return "Outputs a stream to a binary cache file, read back with BinaryFileStream.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public ClassOption streamOption = new ClassOption("stream", 's',
+            "Stream to write.", InstanceStream.class,
+            "generators.RandomTreeGenerator");
+
+    public FileOption binaryFileOption = new FileOption("binaryFile", 'f',
+            "Destination binary file.", null, "bin", true);
+
+    public IntOption maxInstancesOption = new IntOption("maxInstances", 'm',
+            "Maximum number of instances to write to file.", 10000000, 0,
+            Integer.MAX_VALUE);
+
+    public IntOption chunkSizeOption = new IntOption("chunkSize", 'c',
+            "Size in kilobytes above which a chunk of rows is written to file.", 4096, 1,
+            Integer.MAX_VALUE / 1024);
+
+    @Override
+    protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+        InstanceStream stream = (InstanceStream) getPreparedClassOption(this.streamOption);
+        File destFile = this.binaryFileOption.getFile();
+        if (destFile == null) {
+            throw new IllegalArgumentException("No destination file to write to.");
+        }
+        monitor.setCurrentActivity("Writing stream to binary file...", -1.0);
+        long numWritten = 0;
+        try {
+            BinaryFileWriter writer = new BinaryFileWriter(destFile, stream.getHeader(),
+                    this.chunkSizeOption.getValue() * 1024);
+            try {
+                while ((numWritten < this.maxInstancesOption.getValue())
+                        && stream.hasMoreInstances()) {
+                    writer.write(stream.nextInstance().getData());
+                    numWritten++;
+                    if (numWritten % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
+                        if (monitor.taskShouldAbort()) {
+                            return null;
+                        }
+                        monitor.setCurrentActivityDescription("Writing stream to binary file, "
+                                + numWritten + " instances written...");
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(
+                    "Failed writing to file " + destFile, ex);
+        }
+        return "Stream written to binary file " + destFile + " (" + numWritten + " instances)";
+    }
+
+    @Override
+    public Class<?> getTaskResultType() {
+        return String.class;
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ *    DelayedExampleQueueTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+
+/**
+ * Tests DelayedExampleQueue, storing the examples and in compact mode.
+ *
+ * @version $Revision: 1 $
+ */
+public class DelayedExampleQueueTest {
+
+    private static final Instances HEADER = header();
+
+    private static Instances header() {
+        List<Attribute> attributes = new ArrayList<Attribute>();
+        attributes.add(new Attribute("id"));
+        attributes.add(new Attribute("x"));
+        attributes.add(new Attribute("class", Arrays.asList("a", "b", "c")));
+        Instances header = new Instances("test", attributes, 0);
+        header.setClassIndex(2);
+        return header;
+    }
+
+    // Example whose first value is its id
+    private static Example<Instance> example(int id) {
+        Instance instance = new DenseInstance(1.0 + id / 4.0,
+                new double[]{id, -0.1 * id, id % 3});
+        instance.setDataset(HEADER);
+        return new InstanceExample(instance);
+    }
+
+    private static DelayedExampleQueue queue(int capacity, boolean ordered, boolean compact) {
+        return new DelayedExampleQueue(capacity, ordered, compact ? HEADER : null);
+    }
+
+    private static int removeId(DelayedExampleQueue queue) {
+        return (int) queue.removeFirst().getData().value(0);
+    }
+
+    @Test
+    public void testFixedDelayIsFifo() {
+        for (boolean compact : new boolean[]{false, true}) {
+            int delay = 5;
+            DelayedExampleQueue queue = queue(delay + 1, true, compact);
+            int nextOut = 0;
+            for (int step = 0; step < 100; step++) {
+                queue.add(example(step), step + delay);
+                while (queue.isReleased(step)) {
+                    assertEquals(nextOut, removeId(queue));
+                    nextOut++;
+                }
+                assertEquals(Math.max(0, step - delay + 1), nextOut);
+            }
+            while (queue.size() > 0) {
+                assertEquals(nextOut++, removeId(queue));
+            }
+            assertEquals(100, nextOut);
+        }
+    }
+
+    @Test
+    public void testExamplesAreNotCopied() {
+        for (boolean ordered : new boolean[]{false, true}) {
+            DelayedExampleQueue queue = queue(2, ordered, false);
+            Example<Instance> first = example(1);
+            Example<Instance> second = example(2);
+            queue.add(first, 3);
+            queue.add(second, 3);
+            assertSame(first, queue.removeFirst());
+            assertSame(second, queue.removeFirst());
+        }
+    }
+
+    @Test
+    public void testTiesComeOutInInsertionOrder() {
+        for (boolean compact : new boolean[]{false, true}) {
+            DelayedExampleQueue queue = queue(10, false, compact);
+            long[] releaseSteps = {5, 3, 5, 3, 4, 5, 3, 4, 3, 5};
+            for (int id = 0; id < releaseSteps.length; id++) {
+                queue.add(example(id), releaseSteps[id]);
+            }
+            assertFalse(queue.isReleased(2));
+            int[] expected = {1, 3, 6, 8, 4, 7, 0, 2, 5, 9};
+            for (int id : expected) {
+                assertTrue(queue.isReleased(releaseSteps[id]));
+                assertEquals(id, removeId(queue));
+            }
+            assertEquals(0, queue.size());
+        }
+    }
+
+    @Test
+    public void testRandomDelayReleaseOrder() {
+        for (boolean compact : new boolean[]{false, true}) {
+            Random random = new Random(1);
+            int minDelay = 2;
+            int maxDelay = 12;
+            DelayedExampleQueue queue = queue(maxDelay + 1, false, compact);
+            // waiting ids and release steps, in insertion order
+            List<long[]> waiting = new ArrayList<long[]>();
+            int released = 0;
+            for (long step = 1; step <= 10000; step++) {
+                long releaseStep = step + minDelay + random.nextInt(maxDelay - minDelay + 1);
+                queue.add(example((int) step), releaseStep);
+                waiting.add(new long[]{step, releaseStep});
+                while (queue.isReleased(step)) {
+                    // the first of the earliest release steps
+                    long[] first = waiting.get(0);
+                    for (long[] entry : waiting) {
+                        if (entry[1] < first[1]) {
+                            first = entry;
+                        }
+                    }
+                    assertTrue(first[1] <= step);
+                    waiting.remove(first);
+                    assertEquals(first[0], removeId(queue));
+                    released++;
+                }
+                assertEquals(waiting.size(), queue.size());
+                for (long[] entry : waiting) {
+                    assertTrue(entry[1] > step);
+                }
+            }
+            assertTrue(released > 9900);
+        }
+    }
+
+    @Test
+    public void testWrapAroundAtFullCapacity() {
+        for (boolean ordered : new boolean[]{false, true}) {
+            for (boolean compact : new boolean[]{false, true}) {
+                int capacity = 3;
+                DelayedExampleQueue queue = queue(capacity, ordered, compact);
+                int nextIn = 0;
+                int nextOut = 0;
+                for (int round = 0; round < 3 * capacity; round++) {
+                    while (queue.size() < capacity) {
+                        queue.add(example(nextIn), nextIn);
+                        nextIn++;
+                    }
+                    try {
+                        queue.add(example(-1), nextIn);
+                        fail("Added to a full queue");
+                    } catch (IllegalStateException expected) {
+                        // full
+                    }
+                    assertEquals(capacity, queue.size());
+                    // free a different number of slots each round
+                    for (int i = 0; i <= round % capacity; i++) {
+                        assertEquals(nextOut++, removeId(queue));
+                    }
+                }
+                while (queue.size() > 0) {
+                    assertEquals(nextOut++, removeId(queue));
+                }
+                assertEquals(nextIn, nextOut);
+                try {
+                    queue.removeFirst();
+                    fail("Removed from an empty queue");
+                } catch (IllegalStateException expected) {
+                    // empty
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCompactRoundTrip() {
+        for (boolean ordered : new boolean[]{false, true}) {
+            DelayedExampleQueue queue = queue(4, ordered, true);
+            Instance[] instances = {
+                new DenseInstance(0.25, new double[]{1.0, -0.0, 2.0}),
+                new DenseInstance(0.0, new double[]{Double.NaN, Double.MAX_VALUE, 0.0}),
+                new DenseInstance(3.5, new double[]{Double.MIN_VALUE, Double.NEGATIVE_INFINITY, 1.0}),
+                new DenseInstance(1.0, new double[]{-7.125, 1e-300, Double.NaN})
+            };
+            for (int i = 0; i < instances.length; i++) {
+                instances[i].setDataset(HEADER);
+                queue.add(new InstanceExample(instances[i]), i);
+                // the queue keeps its own copy of the values
+                instances[i].setValue(1, 42.0);
+                instances[i].setWeight(9.0);
+            }
+            double[][] values = {
+                {1.0, -0.0, 2.0},
+                {Double.NaN, Double.MAX_VALUE, 0.0},
+                {Double.MIN_VALUE, Double.NEGATIVE_INFINITY, 1.0},
+                {-7.125, 1e-300, Double.NaN}
+            };
+            double[] weights = {0.25, 0.0, 3.5, 1.0};
+            for (int i = 0; i < instances.length; i++) {
+                Instance instance = queue.removeFirst().getData();
+                assertEquals(HEADER.toString(), instance.dataset().toString());
+                assertEquals(HEADER.classIndex(), instance.classIndex());
+                assertEquals(weights[i], instance.weight(), 0.0);
+                assertEquals(values[i].length, instance.numAttributes());
+                for (int j = 0; j < values[i].length; j++) {
+                    assertEquals(Double.doubleToRawLongBits(values[i][j]),
+                            Double.doubleToRawLongBits(instance.value(j)));
+                }
+                assertEquals(values[i][2], instance.classValue(), 0.0);
+            }
+        }
+    }
+}
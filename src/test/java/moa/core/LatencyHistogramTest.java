@@ -0,0 +1,144 @@
+/*
+ *    LatencyHistogramTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests LatencyHistogram against the exact percentiles of the values
+ * recorded.
+ *
+ * @version $Revision: 1 $
+ */
+public class LatencyHistogramTest {
+
+    private static final double[] PERCENTILES = {0.0, 1.0, 25.0, 50.0, 90.0, 99.0, 99.9, 100.0};
+
+    // Value with the percentage of the sorted values below or at it
+    private static long exactPercentile(long[] sorted, double percentile) {
+        long count = Math.max(1, (long) Math.ceil(percentile / 100.0 * sorted.length));
+        return sorted[(int) count - 1];
+    }
+
+    private static LatencyHistogram record(long[] values) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value : values) {
+            histogram.recordValue(value);
+        }
+        return histogram;
+    }
+
+    // The reported value is at or above the exact one, by less than 1%
+    private static void assertWithinPrecision(long[] values) {
+        LatencyHistogram histogram = record(values);
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double percentile : PERCENTILES) {
+            long exact = exactPercentile(sorted, percentile);
+            double reported = histogram.getValueAtPercentile(percentile);
+            assertTrue("p" + percentile + ": " + reported + " < " + exact, reported >= exact);
+            assertTrue("p" + percentile + ": " + reported + " vs " + exact,
+                    reported - exact <= exact / 100.0);
+        }
+        assertEquals(sorted[sorted.length - 1], histogram.getMaxValue());
+        assertEquals(values.length, histogram.getTotalCount());
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        long[] values = new long[512];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 256;
+        }
+        LatencyHistogram histogram = record(values);
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double percentile : PERCENTILES) {
+            assertEquals(exactPercentile(sorted, percentile),
+                    histogram.getValueAtPercentile(percentile), 0.0);
+        }
+    }
+
+    @Test
+    public void testZero() {
+        LatencyHistogram histogram = record(new long[]{0, 0, 0});
+        assertEquals(0.0, histogram.getValueAtPercentile(50.0), 0.0);
+        assertEquals(0.0, histogram.getValueAtPercentile(100.0), 0.0);
+        // negative values are recorded as 0
+        histogram.recordValue(-5);
+        assertEquals(0, histogram.getMaxValue());
+        assertEquals(4, histogram.getTotalCount());
+    }
+
+    @Test
+    public void testBucketBoundaries() {
+        long[] boundaries = {255, 256, 257, 511, 512, 513, 1023, 1024,
+            (1L << 32) - 1, 1L << 32, Long.MAX_VALUE - 1, Long.MAX_VALUE};
+        for (long value : boundaries) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(value + " in bucket " + index, index >= 0 && index < LatencyHistogram.NUM_BUCKETS);
+            // the bucket contains the value, and starts after the previous one
+            assertTrue(value + " above its bucket", LatencyHistogram.highestValueOf(index) >= value);
+            if (index > 0) {
+                assertTrue(value + " below its bucket", LatencyHistogram.highestValueOf(index - 1) < value);
+            }
+            assertWithinPrecision(new long[]{value});
+        }
+        assertEquals(255, LatencyHistogram.highestValueOf(LatencyHistogram.bucketIndex(255)));
+        assertEquals(256, LatencyHistogram.highestValueOf(LatencyHistogram.bucketIndex(256)) - 1);
+        assertEquals(LatencyHistogram.NUM_BUCKETS - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueOf(LatencyHistogram.NUM_BUCKETS - 1));
+    }
+
+    @Test
+    public void testBucketsAreContiguous() {
+        for (int index = 1; index < LatencyHistogram.NUM_BUCKETS; index++) {
+            long lowest = LatencyHistogram.highestValueOf(index - 1) + 1;
+            assertEquals(index, LatencyHistogram.bucketIndex(lowest));
+            assertEquals(index, LatencyHistogram.bucketIndex(LatencyHistogram.highestValueOf(index)));
+        }
+    }
+
+    @Test
+    public void testRandomValues() {
+        Random random = new Random(1);
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            // log-uniform, from nanoseconds to about a minute
+            values[i] = (long) Math.exp(random.nextDouble() * Math.log(6e10));
+        }
+        assertWithinPrecision(values);
+        values[values.length - 1] = Long.MAX_VALUE;
+        assertWithinPrecision(values);
+    }
+
+    @Test
+    public void testEmptyAndReset() {
+        LatencyHistogram histogram = record(new long[]{1000, 2000});
+        histogram.reset();
+        assertEquals(0, histogram.getTotalCount());
+        assertTrue(Double.isNaN(histogram.getValueAtPercentile(50.0)));
+        assertTrue(Double.isNaN(histogram.getMeasurements("train")[0].getValue()));
+    }
+}
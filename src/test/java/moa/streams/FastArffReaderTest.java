@@ -0,0 +1,144 @@
+/*
+ *    FastArffReaderTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Tests FastArffReader.
+ *
+ * @version $Revision: 1 $
+ */
+public class FastArffReaderTest {
+
+    private static final String HEADER = "@relation test\n"
+            + "@attribute x numeric\n"
+            + "@attribute y numeric\n"
+            + "@attribute c {'a\\'b', \"q d\", plain}\n"
+            + "@data\n";
+
+    private static FastArffReader reader(String arff) throws IOException {
+        FastArffReader reader = new FastArffReader(
+                new ByteArrayInputStream(arff.getBytes(StandardCharsets.UTF_8)), -1);
+        assertTrue(reader.isSupported());
+        return reader;
+    }
+
+    private static Instance readOne(String row) throws IOException {
+        FastArffReader reader = reader(HEADER + row + "\n");
+        Instance instance = reader.readInstance();
+        assertNull(reader.readInstance());
+        return instance;
+    }
+
+    @Test
+    public void testQuotedAndEscapedValues() throws IOException {
+        String rows = "1,2,'a\\'b'\n"
+                + "1,2,\"q d\"\n"
+                + "1,2,'plain'\n"
+                + "1,2,plain\n"
+                + "1,2,'q\\040d'\n";
+        FastArffReader reader = reader(HEADER + rows);
+        assertEquals("a'b", reader.getHeader().attribute(2).value(0));
+        double[] expected = {0, 1, 2, 2, 1};
+        for (int i = 0; i < expected.length; i++) {
+            Instance instance = reader.readInstance();
+            assertEquals(expected[i], instance.value(2), 0.0);
+        }
+        assertNull(reader.readInstance());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testUndeclaredNominalValue() throws IOException {
+        readOne("1,2,'a\\'c'");
+    }
+
+    @Test
+    public void testSparseRows() throws IOException {
+        FastArffReader reader = reader(HEADER + "{1 3.5, 2 \"q d\"}\n{}\n{ 0 -1 }\n");
+        Instance instance = reader.readInstance();
+        assertEquals(0.0, instance.value(0), 0.0);
+        assertEquals(3.5, instance.value(1), 0.0);
+        assertEquals(1.0, instance.value(2), 0.0);
+        instance = reader.readInstance();
+        assertEquals(0.0, instance.value(0), 0.0);
+        assertEquals(0.0, instance.value(1), 0.0);
+        assertEquals(0.0, instance.value(2), 0.0);
+        instance = reader.readInstance();
+        assertEquals(-1.0, instance.value(0), 0.0);
+        assertNull(reader.readInstance());
+    }
+
+    @Test
+    public void testMissingValues() throws IOException {
+        Instance instance = readOne("?, 2, ?");
+        assertTrue(Double.isNaN(instance.value(0)));
+        assertEquals(2.0, instance.value(1), 0.0);
+        assertTrue(Double.isNaN(instance.value(2)));
+        instance = readOne("{0 ?}");
+        assertTrue(Double.isNaN(instance.value(0)));
+    }
+
+    @Test
+    public void testInstanceWeight() throws IOException {
+        assertEquals(1.0, readOne("1,2,plain").weight(), 0.0);
+        assertEquals(0.25, readOne("1,2,plain,{0.25}").weight(), 0.0);
+        assertEquals(3.0, readOne("1,2,plain, { 3 } ").weight(), 0.0);
+        assertEquals(2.0, readOne("{0 1, 2 plain}, {2}").weight(), 0.0);
+    }
+
+    @Test
+    public void testComments() throws IOException {
+        FastArffReader reader = reader(HEADER + "% comment\n\n  % indented comment\n1,2,plain\n%\n");
+        Instance instance = reader.readInstance();
+        assertEquals(1.0, instance.value(0), 0.0);
+        assertNull(reader.readInstance());
+    }
+
+    @Test
+    public void testNumbers() throws IOException {
+        String[] numbers = {
+            "0", "-0", "-0.0", "+1.5", "0.1", "123456789.123456789",
+            "1e22", "1e23", "1.7976931348623157e308", "4.9e-324", "1e-22", "1e-23",
+            "2.5E-3", "9007199254740991", "9007199254740992", "9007199254740993",
+            "12345678901234567890", "0.000000000000000000001234", "1e400",
+            "NaN", "Infinity", "-Infinity"
+        };
+        for (String number : numbers) {
+            Instance instance = readOne(number + "," + number + ",plain");
+            double expected = Double.parseDouble(number);
+            assertEquals(number, Double.doubleToRawLongBits(expected),
+                    Double.doubleToRawLongBits(instance.value(0)));
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMalformedNumber() throws IOException {
+        readOne("1x,2,plain");
+    }
+}